@@ -0,0 +1,149 @@
+package benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import datatime.AsciiFormatter;
+import datatime.IsoDateTimeParser;
+import datatime.ZoneConverter;
+
+/**
+ * The date time paths : parsing comtel timestamps, converting London local
+ * times to instants, and formatting prices and timestamps.
+ *
+ * Each benchmark goes through BATCH values, and the score is per value. Run
+ * with -prof gc to see the bytes allocated per value.
+ *
+ * @author aus
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class DateTimeBenchmark
+{
+    private static final int BATCH = 1024;
+
+    private final DateTimeFormatter lenient =
+            DateTimeFormatter.ISO_DATE_TIME.withResolverStyle(ResolverStyle.LENIENT);
+    private final ZoneId london = ZoneId.of("Europe/London");
+    private final ZoneConverter converter = new ZoneConverter(london, 2016, 2017);
+
+    private final String[] texts = new String[BATCH];
+    private final byte[] bytes = new byte[BATCH * IsoDateTimeParser.LENGTH];
+    private final LocalDateTime[] dateTimes = new LocalDateTime[BATCH];
+    private final long[] localEpochSeconds = new long[BATCH];
+    private final double[] prices = new double[BATCH];
+    private final char[] chars = new char[64];
+
+    @Setup
+    public void setUp()
+    {
+        LocalDateTime start = LocalDateTime.of(2016, 3, 26, 0, 0);
+        for (int i = 0; i < BATCH; i++)
+        {
+            dateTimes[i] = start.plusMinutes(i * 7L);
+            localEpochSeconds[i] = dateTimes[i].toEpochSecond(ZoneOffset.UTC);
+            // every 8th one is a comtel hour.
+            texts[i] = i % 8 == 0 ? dateTimes[i].toLocalDate() + "T25:00:00"
+                    : dateTimes[i].format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            System.arraycopy(texts[i].getBytes(StandardCharsets.US_ASCII), 0, bytes, i * IsoDateTimeParser.LENGTH,
+                             IsoDateTimeParser.LENGTH);
+            prices[i] = i * 0.37;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void parseLenientFormatter(Blackhole blackhole)
+    {
+        for (String text : texts)
+        {
+            blackhole.consume(LocalDateTime.parse(text, lenient));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void parseIsoDateTimeParser(Blackhole blackhole)
+    {
+        for (String text : texts)
+        {
+            blackhole.consume(IsoDateTimeParser.toEpochSecond(text, 0));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void parseIsoDateTimeParserBytes(Blackhole blackhole)
+    {
+        for (int offset = 0; offset < bytes.length; offset += IsoDateTimeParser.LENGTH)
+        {
+            blackhole.consume(IsoDateTimeParser.toEpochSecond(bytes, offset));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void zonedDateTime(Blackhole blackhole)
+    {
+        for (LocalDateTime dateTime : dateTimes)
+        {
+            blackhole.consume(ZonedDateTime.of(dateTime, london).toEpochSecond());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void zoneConverter(Blackhole blackhole)
+    {
+        for (long localEpochSecond : localEpochSeconds)
+        {
+            blackhole.consume(converter.toEpochSecond(localEpochSecond));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void formatStringFormat(Blackhole blackhole)
+    {
+        for (int i = 0; i < BATCH; i++)
+        {
+            blackhole.consume(String.format(Locale.ROOT, "%.2f", prices[i]));
+            blackhole.consume(dateTimes[i].format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void formatAsciiFormatter(Blackhole blackhole)
+    {
+        for (int i = 0; i < BATCH; i++)
+        {
+            blackhole.consume(AsciiFormatter.formatFixed(prices[i], 2, chars, 0));
+            blackhole.consume(AsciiFormatter.formatDateTime(localEpochSeconds[i], 0, chars, 0));
+        }
+    }
+}
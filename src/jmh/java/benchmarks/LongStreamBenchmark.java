@@ -0,0 +1,82 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import stream.LongArrayList;
+import stream.OffHeapLongColumn;
+import stream.ParallelCollectors;
+
+/**
+ * The same sums and partition as StreamBenchmark, without boxing : on a
+ * LongArrayList and on an OffHeapLongColumn.
+ *
+ * @author aus
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class LongStreamBenchmark
+{
+    @Param({ "10000", "1000000" })
+    public int size;
+
+    private LongArrayList list;
+    private OffHeapLongColumn column;
+
+    @Setup
+    public void setUp()
+    {
+        list = new LongArrayList(size);
+        list.addAll(LongStream.range(0, size).toArray());
+        column = new OffHeapLongColumn();
+        column.addAll(list.toArray());
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        column.close();
+    }
+
+    @Benchmark
+    public long sumSequential()
+    {
+        return list.stream().sum();
+    }
+
+    @Benchmark
+    public long sumParallel()
+    {
+        return list.parallelStream().sum();
+    }
+
+    @Benchmark
+    public long sumOffHeapParallel()
+    {
+        return column.parallelStream().sum();
+    }
+
+    @Benchmark
+    public Map<Boolean, long[]> partitionParallel()
+    {
+        return ParallelCollectors.partition(list.parallelStream(), s -> (s % 2 == 0));
+    }
+}
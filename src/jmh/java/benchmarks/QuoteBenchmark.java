@@ -0,0 +1,137 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.Shop;
+import thread.CallableTask;
+import thread.LatencyShop;
+import thread.QuoteExecutor;
+
+/**
+ * The quote fan out of CompletableFutureTest : ask for the price of every
+ * product at the same time and add them up.
+ *
+ * The shop is a LatencyShop, so the latency is a parameter instead of the 1
+ * second of Shop.
+ *
+ * @author aus
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class QuoteBenchmark
+{
+    @Param({ "16", "256" })
+    public int quotes;
+
+    @Param({ "0", "1" })
+    public long latencyMs;
+
+    private Shop shop;
+    private List<String> products;
+    private QuoteExecutor platform;
+    private QuoteExecutor forkJoin;
+
+    @Setup
+    public void setUp()
+    {
+        shop = new LatencyShop(product -> latencyMs);
+        products = new ArrayList<>();
+        for (int i = 0; i < quotes; i++)
+        {
+            products.add("product" + i);
+        }
+        platform = QuoteExecutor.create(QuoteExecutor.Backend.PLATFORM, 64);
+        forkJoin = QuoteExecutor.create(QuoteExecutor.Backend.FORK_JOIN, 64);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        platform.close();
+        forkJoin.close();
+    }
+
+    /**
+     * A blocking getPrice() per product on the common pool.
+     */
+    @Benchmark
+    public double supplyAsync()
+    {
+        List<CompletableFuture<Double>> futures = new ArrayList<>(quotes);
+        for (String product : products)
+        {
+            futures.add(CompletableFuture.supplyAsync(() -> shop.getPrice(product)));
+        }
+        return sum(futures);
+    }
+
+    /**
+     * No thread waits for the shop.
+     */
+    @Benchmark
+    public double getPriceAsync()
+    {
+        List<CompletableFuture<Double>> futures = new ArrayList<>(quotes);
+        for (String product : products)
+        {
+            futures.add(shop.getPriceAsync(product));
+        }
+        return sum(futures);
+    }
+
+    @Benchmark
+    public double quoteExecutorPlatform()
+    {
+        return sum(platform.submitAll(tasks()));
+    }
+
+    /**
+     * Tasks only reach the pool with a permit, so at most 64 wait for the
+     * shop and the rest queue without a thread.
+     */
+    @Benchmark
+    public double quoteExecutorForkJoin()
+    {
+        return sum(forkJoin.submitAll(tasks()));
+    }
+
+    private List<CallableTask> tasks()
+    {
+        List<CallableTask> tasks = new ArrayList<>(quotes);
+        for (String product : products)
+        {
+            tasks.add(new CallableTask(shop, product));
+        }
+        return tasks;
+    }
+
+    private static double sum(List<CompletableFuture<Double>> futures)
+    {
+        double total = 0;
+        for (CompletableFuture<Double> future : futures)
+        {
+            total += future.join();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,94 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import stream.ParallelCollectors;
+
+/**
+ * The cases of ParallelStreamTest : sum and groupingBy, sequential and
+ * parallel, on an ArrayList and a LinkedList of boxed longs.
+ *
+ * @author aus
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class StreamBenchmark
+{
+    @Param({ "ArrayList", "LinkedList" })
+    public String listType;
+
+    @Param({ "10000", "1000000" })
+    public int size;
+
+    private List<Long> list;
+
+    @Setup
+    public void setUp()
+    {
+        list = "LinkedList".equals(listType) ? new LinkedList<>() : new ArrayList<>(size);
+        for (long i = 0; i < size; i++)
+        {
+            list.add(Long.valueOf(i));
+        }
+    }
+
+    /**
+     * case 1
+     */
+    @Benchmark
+    public long sumSequential()
+    {
+        return list.stream().mapToLong(l -> l).sum();
+    }
+
+    @Benchmark
+    public long sumParallel()
+    {
+        return list.parallelStream().mapToLong(l -> l).sum();
+    }
+
+    /**
+     * case 2
+     */
+    @Benchmark
+    public Map<Boolean, List<Long>> groupingBySequential()
+    {
+        return list.stream().collect(Collectors.groupingBy(s -> (s % 2 == 0)));
+    }
+
+    @Benchmark
+    public Map<Boolean, List<Long>> groupingByParallel()
+    {
+        return list.parallelStream().collect(Collectors.groupingBy(s -> (s % 2 == 0)));
+    }
+
+    /**
+     * case 3
+     */
+    @Benchmark
+    public Map<Boolean, List<Long>> partitioningByParallelCollectors()
+    {
+        return list.parallelStream().collect(ParallelCollectors.partitioningBy(s -> (s % 2 == 0)));
+    }
+}
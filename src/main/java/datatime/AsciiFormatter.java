@@ -0,0 +1,358 @@
+
+package datatime;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+/**
+ * Writes prices and timestamps as ASCII into a char[] or ByteBuffer the caller
+ * owns, without making any garbage.
+ *
+ * <pre>
+ * formatFixed()    - the same text as String.format(Locale.ROOT, "%.2f", value)
+ *                    for any number of decimals from 0 to 9.
+ * formatDateTime() - the same text as DateTimeFormatter.ISO_LOCAL_DATE_TIME,
+ *                    e.g. 2016-01-15T10:15:30 or 2016-01-15T10:15:30.25
+ * </pre>
+ *
+ * String.format rounds half up the shortest decimal which reads back as the
+ * same double ( Double.toString ), not the exact binary value, so 1.005 is
+ * 1.01 even though the double is a little below 1.005. formatFixed() does the
+ * same : it finds the decimal on the 10^-(decimals+1) grid which reads back
+ * as the value, if there is one, and rounds that. The product value * 10^n
+ * is worked out exactly with Dekker's two product, so no BigDecimal is needed.
+ *
+ * This is exact while |value| &lt; 2^53 / 10^(decimals+2), about 9e11 for 2
+ * decimals, where only one grid point can read back as the value. Bigger
+ * values, NaN and infinities go through String.format, and allocate.
+ *
+ * The char[] methods return the offset after the text. The ByteBuffer methods
+ * write at the position and move it.
+ *
+ * @author aus
+ */
+public final class AsciiFormatter
+{
+    public static final int MAX_DECIMALS = 9;
+
+    /**
+     * Longest text from formatDateTime() : +999999999-12-31T23:59:59.999999999
+     */
+    public static final int MAX_DATE_TIME_LENGTH = 35;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_DECIMALS + 3];
+
+    private static final double SPLITTER = 134217729.0; // 2^27 + 1
+
+    private static final long NOT_EXACT = -1;
+
+    static
+    {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+        {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private AsciiFormatter()
+    {
+    }
+
+    public static int formatFixed(double value, int decimals, char[] dest, int offset)
+    {
+        long rounded = roundHalfUp(value, decimals);
+        if (rounded == NOT_EXACT)
+        {
+            String text = String.format(Locale.ROOT, "%." + decimals + "f", value);
+            text.getChars(0, text.length(), dest, offset);
+            return offset + text.length();
+        }
+        int i = offset;
+        if (Double.doubleToRawLongBits(value) < 0)
+        {
+            dest[i++] = '-';
+        }
+        long unit = POWERS_OF_TEN[decimals];
+        i = putLong(rounded / unit, dest, i);
+        if (decimals > 0)
+        {
+            dest[i++] = '.';
+            i = putPadded(rounded % unit, decimals, dest, i);
+        }
+        return i;
+    }
+
+    public static void formatFixed(double value, int decimals, ByteBuffer dest)
+    {
+        long rounded = roundHalfUp(value, decimals);
+        if (rounded == NOT_EXACT)
+        {
+            String text = String.format(Locale.ROOT, "%." + decimals + "f", value);
+            for (int i = 0; i < text.length(); i++)
+            {
+                dest.put((byte) text.charAt(i));
+            }
+            return;
+        }
+        if (Double.doubleToRawLongBits(value) < 0)
+        {
+            dest.put((byte) '-');
+        }
+        long unit = POWERS_OF_TEN[decimals];
+        putLong(rounded / unit, dest);
+        if (decimals > 0)
+        {
+            dest.put((byte) '.');
+            putPadded(rounded % unit, decimals, dest);
+        }
+    }
+
+    public static int formatDateTime(LocalDateTime dateTime, char[] dest, int offset)
+    {
+        return formatDateTime(dateTime.getYear(), dateTime.getMonthValue(), dateTime.getDayOfMonth(),
+                              dateTime.getHour(), dateTime.getMinute(), dateTime.getSecond(), dateTime.getNano(),
+                              dest, offset);
+    }
+
+    public static void formatDateTime(LocalDateTime dateTime, ByteBuffer dest)
+    {
+        formatDateTime(dateTime.getYear(), dateTime.getMonthValue(), dateTime.getDayOfMonth(),
+                       dateTime.getHour(), dateTime.getMinute(), dateTime.getSecond(), dateTime.getNano(), dest);
+    }
+
+    /**
+     * The local date time of the local epoch second, as from
+     * IsoDateTimeParser.toEpochSecond().
+     */
+    public static int formatDateTime(long localEpochSecond, int nano, char[] dest, int offset)
+    {
+        long days = Math.floorDiv(localEpochSecond, 86400L);
+        int secondOfDay = (int) Math.floorMod(localEpochSecond, 86400L);
+        long yearMonthDay = civilFromDays(days);
+        return formatDateTime((int) (yearMonthDay >> 16), (int) (yearMonthDay >> 8) & 0xFF, (int) yearMonthDay & 0xFF,
+                              secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60, nano, dest, offset);
+    }
+
+    public static void formatDateTime(long localEpochSecond, int nano, ByteBuffer dest)
+    {
+        long days = Math.floorDiv(localEpochSecond, 86400L);
+        int secondOfDay = (int) Math.floorMod(localEpochSecond, 86400L);
+        long yearMonthDay = civilFromDays(days);
+        formatDateTime((int) (yearMonthDay >> 16), (int) (yearMonthDay >> 8) & 0xFF, (int) yearMonthDay & 0xFF,
+                       secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60, nano, dest);
+    }
+
+    private static int formatDateTime(int year, int month, int day, int hour, int minute, int second, int nano,
+                                      char[] dest, int offset)
+    {
+        int i = putYear(year, dest, offset);
+        dest[i++] = '-';
+        i = putPadded(month, 2, dest, i);
+        dest[i++] = '-';
+        i = putPadded(day, 2, dest, i);
+        dest[i++] = 'T';
+        i = putPadded(hour, 2, dest, i);
+        dest[i++] = ':';
+        i = putPadded(minute, 2, dest, i);
+        dest[i++] = ':';
+        i = putPadded(second, 2, dest, i);
+        if (nano > 0)
+        {
+            dest[i++] = '.';
+            int digits = fractionDigits(nano);
+            i = putPadded(nano / POWERS_OF_TEN[9 - digits], digits, dest, i);
+        }
+        return i;
+    }
+
+    private static void formatDateTime(int year, int month, int day, int hour, int minute, int second, int nano,
+                                       ByteBuffer dest)
+    {
+        putYear(year, dest);
+        dest.put((byte) '-');
+        putPadded(month, 2, dest);
+        dest.put((byte) '-');
+        putPadded(day, 2, dest);
+        dest.put((byte) 'T');
+        putPadded(hour, 2, dest);
+        dest.put((byte) ':');
+        putPadded(minute, 2, dest);
+        dest.put((byte) ':');
+        putPadded(second, 2, dest);
+        if (nano > 0)
+        {
+            dest.put((byte) '.');
+            int digits = fractionDigits(nano);
+            putPadded(nano / POWERS_OF_TEN[9 - digits], digits, dest);
+        }
+    }
+
+    /**
+     * |value| * 10^decimals rounded half up the way String.format does, or
+     * NOT_EXACT when it has to be left to String.format.
+     */
+    static long roundHalfUp(double value, int decimals)
+    {
+        if (decimals < 0 || decimals > MAX_DECIMALS)
+        {
+            throw new IllegalArgumentException("decimals [" + decimals + "] must be 0 to " + MAX_DECIMALS);
+        }
+        double x = Math.abs(value);
+        // NaN fails this too.
+        if (!(x < (double) (1L << 53) / POWERS_OF_TEN[decimals + 2]))
+        {
+            return NOT_EXACT;
+        }
+        double scale = POWERS_OF_TEN[decimals + 1];
+
+        // exact x * scale = product + error
+        double product = x * scale;
+        double error = twoProductError(x, scale, product);
+        long grid = (long) product;
+        if (product == grid && error < 0)
+        {
+            grid--;
+        }
+
+        // the shortest decimal is on the grid if a grid point reads back as x.
+        if ((grid + 1) / scale == x)
+        {
+            grid++;
+        }
+        return grid / 10 + (grid % 10 >= 5 ? 1 : 0);
+    }
+
+    /**
+     * a * b - product exactly, for product = a * b rounded. Dekker's two
+     * product, with Veltkamp's split.
+     */
+    private static double twoProductError(double a, double b, double product)
+    {
+        double ca = SPLITTER * a;
+        double aHigh = ca - (ca - a);
+        double aLow = a - aHigh;
+        double cb = SPLITTER * b;
+        double bHigh = cb - (cb - b);
+        double bLow = b - bHigh;
+        return ((aHigh * bHigh - product) + aHigh * bLow + aLow * bHigh) + aLow * bLow;
+    }
+
+    /**
+     * Year, month and day of the days since 1970-01-01, as year << 16 | month
+     * << 8 | day.
+     */
+    static long civilFromDays(long days)
+    {
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year << 16 | month << 8 | day;
+    }
+
+    /**
+     * Digits of the fraction without trailing zeros.
+     */
+    private static int fractionDigits(int nano)
+    {
+        int digits = 9;
+        while (nano % 10 == 0)
+        {
+            nano /= 10;
+            digits--;
+        }
+        return digits;
+    }
+
+    /**
+     * ISO_LOCAL_DATE : at least 4 digits, a sign below 0 or above 9999.
+     */
+    private static int putYear(int year, char[] dest, int offset)
+    {
+        int i = offset;
+        if (year < 0)
+        {
+            dest[i++] = '-';
+        }
+        else if (year > 9999)
+        {
+            dest[i++] = '+';
+        }
+        long abs = Math.abs((long) year);
+        return abs > 9999 ? putLong(abs, dest, i) : putPadded(abs, 4, dest, i);
+    }
+
+    private static void putYear(int year, ByteBuffer dest)
+    {
+        if (year < 0)
+        {
+            dest.put((byte) '-');
+        }
+        else if (year > 9999)
+        {
+            dest.put((byte) '+');
+        }
+        long abs = Math.abs((long) year);
+        if (abs > 9999)
+        {
+            putLong(abs, dest);
+        }
+        else
+        {
+            putPadded(abs, 4, dest);
+        }
+    }
+
+    private static int putLong(long value, char[] dest, int offset)
+    {
+        return putPadded(value, digits(value), dest, offset);
+    }
+
+    private static void putLong(long value, ByteBuffer dest)
+    {
+        putPadded(value, digits(value), dest);
+    }
+
+    private static int putPadded(long value, int width, char[] dest, int offset)
+    {
+        for (int i = offset + width - 1; i >= offset; i--)
+        {
+            dest[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + width;
+    }
+
+    private static void putPadded(long value, int width, ByteBuffer dest)
+    {
+        if (dest.remaining() < width)
+        {
+            throw new BufferOverflowException();
+        }
+        int position = dest.position();
+        for (int i = position + width - 1; i >= position; i--)
+        {
+            dest.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        dest.position(position + width);
+    }
+
+    private static int digits(long value)
+    {
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10)
+        {
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,189 @@
+
+package datatime;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parses yyyy-MM-ddTHH:mm:ss timestamps at a fixed position, without the
+ * Parsed object and temporaries DateTimeFormatter makes on every call.
+ *
+ * Fields out of range roll over the same way as
+ * DateTimeFormatter.ISO_DATE_TIME.withResolverStyle(ResolverStyle.LENIENT),
+ * so the comtel 2016-01-15T25:00:00 is 2016-01-16T01:00:00, and month 13 is
+ * January of the next year. Each field must still have its two ( or four )
+ * digits.
+ *
+ * toEpochSecond() returns the seconds since 1970-01-01T00:00:00 of the local
+ * date time, as LocalDateTime.toEpochSecond(ZoneOffset.UTC), and allocates
+ * nothing. parse() also reads an optional fraction of up to 9 digits.
+ *
+ * @author aus
+ */
+public final class IsoDateTimeParser
+{
+    /**
+     * Length of yyyy-MM-ddTHH:mm:ss
+     */
+    public static final int LENGTH = 19;
+
+    private static final long SECONDS_PER_DAY = 86400L;
+
+    private IsoDateTimeParser()
+    {
+    }
+
+    public static long toEpochSecond(CharSequence text)
+    {
+        if (text.length() != LENGTH)
+        {
+            throw new DateTimeParseException("Expected " + LENGTH + " characters", text, 0);
+        }
+        return toEpochSecond(text, 0);
+    }
+
+    public static long toEpochSecond(CharSequence text, int offset)
+    {
+        if (offset < 0 || offset + LENGTH > text.length())
+        {
+            throw new DateTimeParseException("No timestamp at " + offset, text, offset);
+        }
+        for (int i = 0; i < LENGTH; i++)
+        {
+            if (!valid(text.charAt(offset + i), i))
+            {
+                throw new DateTimeParseException("Unexpected character at " + (offset + i), text, offset + i);
+            }
+        }
+        return epochSecond(digits(text, offset, 4),
+                           digits(text, offset + 5, 2),
+                           digits(text, offset + 8, 2),
+                           digits(text, offset + 11, 2),
+                           digits(text, offset + 14, 2),
+                           digits(text, offset + 17, 2));
+    }
+
+    /**
+     * Reads the 19 ASCII bytes from offset.
+     */
+    public static long toEpochSecond(byte[] bytes, int offset)
+    {
+        if (offset < 0 || offset + LENGTH > bytes.length)
+        {
+            throw new IndexOutOfBoundsException("offset [" + offset + "] length [" + bytes.length + "]");
+        }
+        for (int i = 0; i < LENGTH; i++)
+        {
+            if (!valid((char) bytes[offset + i], i))
+            {
+                throw new DateTimeParseException("Unexpected byte at " + (offset + i),
+                                                 new String(bytes, offset, LENGTH, StandardCharsets.ISO_8859_1), i);
+            }
+        }
+        return epochSecond(digits(bytes, offset, 4),
+                           digits(bytes, offset + 5, 2),
+                           digits(bytes, offset + 8, 2),
+                           digits(bytes, offset + 11, 2),
+                           digits(bytes, offset + 14, 2),
+                           digits(bytes, offset + 17, 2));
+    }
+
+    /**
+     * yyyy-MM-ddTHH:mm:ss with an optional .fffffffff, as a LocalDateTime.
+     */
+    public static LocalDateTime parse(CharSequence text)
+    {
+        int nano = 0;
+        int length = text.length();
+        if (length > LENGTH)
+        {
+            if (text.charAt(LENGTH) != '.' || length == LENGTH + 1 || length > LENGTH + 10)
+            {
+                throw new DateTimeParseException("Unexpected fraction", text, LENGTH);
+            }
+            for (int i = LENGTH + 1; i < LENGTH + 10; i++)
+            {
+                int digit = 0;
+                if (i < length)
+                {
+                    digit = text.charAt(i) - '0';
+                    if (digit < 0 || digit > 9)
+                    {
+                        throw new DateTimeParseException("Unexpected character at " + i, text, i);
+                    }
+                }
+                nano = nano * 10 + digit;
+            }
+        }
+        else if (length < LENGTH)
+        {
+            throw new DateTimeParseException("Expected " + LENGTH + " characters", text, 0);
+        }
+        return LocalDateTime.ofEpochSecond(toEpochSecond(text, 0), nano, ZoneOffset.UTC);
+    }
+
+    /**
+     * Lenient : month 1 of the year, plus month - 1 months, plus day - 1
+     * days, plus the time.
+     */
+    static long epochSecond(int year, int month, int day, int hour, int minute, int second)
+    {
+        long months = year * 12L + month - 1;
+        long y = Math.floorDiv(months, 12);
+        int m = (int) Math.floorMod(months, 12) + 1;
+        long days = daysFromCivil(y, m, 1) + day - 1;
+        return days * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+    }
+
+    /**
+     * Days from 1970-01-01 to the date, in the proleptic Gregorian calendar.
+     */
+    static long daysFromCivil(long year, int month, int day)
+    {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static boolean valid(char c, int index)
+    {
+        switch (index)
+        {
+        case 4:
+        case 7:
+            return c == '-';
+        case 10:
+            return c == 'T';
+        case 13:
+        case 16:
+            return c == ':';
+        default:
+            return c >= '0' && c <= '9';
+        }
+    }
+
+    private static int digits(CharSequence text, int offset, int count)
+    {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++)
+        {
+            value = value * 10 + text.charAt(i) - '0';
+        }
+        return value;
+    }
+
+    private static int digits(byte[] bytes, int offset, int count)
+    {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++)
+        {
+            value = value * 10 + bytes[i] - '0';
+        }
+        return value;
+    }
+}
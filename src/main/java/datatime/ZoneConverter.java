@@ -0,0 +1,197 @@
+
+package datatime;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts local date times of one zone to instants, with the transitions of
+ * a range of years worked out once, instead of asking ZoneRules every time.
+ *
+ * Local times are given as local epoch seconds, as
+ * LocalDateTime.toEpochSecond(ZoneOffset.UTC) or
+ * IsoDateTimeParser.toEpochSecond(). Each transition gives a window of local
+ * times, found by binary search :
+ *
+ * <pre>
+ * before the window - the offset before the transition.
+ * after the window  - the offset after the transition.
+ * a gap             - the local time does not exist. Like ZonedDateTime.of(),
+ *                     it is moved forward by the length of the gap, which is
+ *                     the same as using the offset before.
+ * an overlap        - the local time happens twice. EARLIER uses the offset
+ *                     before, like ZonedDateTime.of(), LATER the offset after,
+ *                     like withLaterOffsetAtOverlap().
+ * </pre>
+ *
+ * Outside the range of years, the ZoneRules are used, so the answer is always
+ * the same as ZonedDateTime, only slower.
+ *
+ * @author aus
+ */
+public final class ZoneConverter
+{
+    public enum Overlap
+    {
+        EARLIER, LATER
+    }
+
+    /**
+     * No offset is bigger than 18 hours.
+     */
+    private static final long MAX_OFFSET_SECONDS = 18 * 3600;
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private final long rangeStart;
+    private final long rangeEnd;
+    private final int firstOffset;
+
+    // for transition i, local times in [windowStart[i], windowEnd[i]) are in the gap or overlap.
+    private final long[] windowStart;
+    private final long[] windowEnd;
+    private final int[] offsetBefore;
+    private final int[] offsetAfter;
+
+    /**
+     * @param fromYear first year of the table
+     * @param toYear   last year of the table, included
+     */
+    public ZoneConverter(ZoneId zone, int fromYear, int toYear)
+    {
+        super();
+        if (toYear < fromYear)
+        {
+            throw new IllegalArgumentException("fromYear [" + fromYear + "] toYear [" + toYear + "]");
+        }
+        this.zone = zone;
+        this.rules = zone.getRules();
+        this.rangeStart = LocalDateTime.of(fromYear, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+        this.rangeEnd = LocalDateTime.of(toYear + 1, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+
+        List<ZoneOffsetTransition> transitions = new ArrayList<>();
+        ZoneOffsetTransition transition =
+                rules.nextTransition(Instant.ofEpochSecond(rangeStart - MAX_OFFSET_SECONDS - 1));
+        while (transition != null && transition.toEpochSecond() <= rangeEnd + MAX_OFFSET_SECONDS)
+        {
+            transitions.add(transition);
+            transition = rules.nextTransition(transition.getInstant());
+        }
+
+        int size = transitions.size();
+        this.windowStart = new long[size];
+        this.windowEnd = new long[size];
+        this.offsetBefore = new int[size];
+        this.offsetAfter = new int[size];
+        for (int i = 0; i < size; i++)
+        {
+            ZoneOffsetTransition t = transitions.get(i);
+            offsetBefore[i] = t.getOffsetBefore().getTotalSeconds();
+            offsetAfter[i] = t.getOffsetAfter().getTotalSeconds();
+            windowStart[i] = t.toEpochSecond() + Math.min(offsetBefore[i], offsetAfter[i]);
+            windowEnd[i] = t.toEpochSecond() + Math.max(offsetBefore[i], offsetAfter[i]);
+        }
+        this.firstOffset =
+                size > 0 ? offsetBefore[0] : rules.getOffset(Instant.ofEpochSecond(rangeStart)).getTotalSeconds();
+    }
+
+    public ZoneId getZone()
+    {
+        return zone;
+    }
+
+    /**
+     * True when the local time is inside the years of the table.
+     */
+    public boolean covers(long localEpochSecond)
+    {
+        return localEpochSecond >= rangeStart && localEpochSecond < rangeEnd;
+    }
+
+    public long toEpochSecond(long localEpochSecond)
+    {
+        return toEpochSecond(localEpochSecond, Overlap.EARLIER);
+    }
+
+    public long toEpochSecond(long localEpochSecond, Overlap overlap)
+    {
+        return localEpochSecond - offsetSeconds(localEpochSecond, overlap);
+    }
+
+    public long toEpochSecond(LocalDateTime localDateTime, Overlap overlap)
+    {
+        return toEpochSecond(localDateTime.toEpochSecond(ZoneOffset.UTC), overlap);
+    }
+
+    public Instant toInstant(LocalDateTime localDateTime, Overlap overlap)
+    {
+        return Instant.ofEpochSecond(toEpochSecond(localDateTime, overlap), localDateTime.getNano());
+    }
+
+    /**
+     * The offset used for the local time. In a gap it is the offset before
+     * the gap.
+     */
+    public ZoneOffset getOffset(long localEpochSecond, Overlap overlap)
+    {
+        return ZoneOffset.ofTotalSeconds(offsetSeconds(localEpochSecond, overlap));
+    }
+
+    private int offsetSeconds(long localEpochSecond, Overlap overlap)
+    {
+        if (!covers(localEpochSecond))
+        {
+            return rulesOffset(localEpochSecond, overlap);
+        }
+        int i = lastWindowStartingAtOrBefore(localEpochSecond);
+        if (i < 0)
+        {
+            return firstOffset;
+        }
+        if (localEpochSecond >= windowEnd[i])
+        {
+            return offsetAfter[i];
+        }
+        boolean gap = offsetAfter[i] > offsetBefore[i];
+        return gap || overlap == Overlap.EARLIER ? offsetBefore[i] : offsetAfter[i];
+    }
+
+    private int lastWindowStartingAtOrBefore(long localEpochSecond)
+    {
+        int low = 0, high = windowStart.length - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            if (windowStart[mid] <= localEpochSecond)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    private int rulesOffset(long localEpochSecond, Overlap overlap)
+    {
+        LocalDateTime local = LocalDateTime.ofEpochSecond(localEpochSecond, 0, ZoneOffset.UTC);
+        ZoneOffsetTransition transition = rules.getTransition(local);
+        if (transition == null)
+        {
+            return rules.getOffset(local).getTotalSeconds();
+        }
+        if (transition.isGap() || overlap == Overlap.EARLIER)
+        {
+            return transition.getOffsetBefore().getTotalSeconds();
+        }
+        return transition.getOffsetAfter().getTotalSeconds();
+    }
+}
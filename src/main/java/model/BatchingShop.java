@@ -0,0 +1,92 @@
+package model;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+
+/**
+ * Put in front of a shop to collect single price requests into batches.
+ *
+ * The first request opens a batch. The batch goes to the shop as one getPricesAsync() call when the window is over,
+ * or earlier when it is full. Requests for the same product in one batch share the answer.
+ *
+ * @author User
+ *
+ */
+public class BatchingShop extends Shop {
+
+	private final Shop shop;
+	private final long windowMs;
+	private final int maxBatchSize;
+
+	/**
+	 * Batch being filled, or null when there is none. Guarded by this.
+	 */
+	private Map<String, CompletableFuture<Double>> pending;
+
+	public BatchingShop(Shop shop_, long windowMs_, int maxBatchSize_) {
+		super();
+		if (windowMs_ < 0 || maxBatchSize_ < 1) {
+			throw new IllegalArgumentException("windowMs [" + windowMs_ + "] maxBatchSize [" + maxBatchSize_ + "]");
+		}
+		this.shop = shop_;
+		this.windowMs = windowMs_;
+		this.maxBatchSize = maxBatchSize_;
+	}
+
+	@Override
+	public CompletableFuture<Double> getPriceAsync(String product) {
+		CompletableFuture<Double> future;
+		Map<String, CompletableFuture<Double>> full = null;
+		synchronized (this) {
+			if (pending == null) {
+				Map<String, CompletableFuture<Double>> batch = new LinkedHashMap<>();
+				pending = batch;
+				TIMER.schedule(() -> flushIfPending(batch), windowMs, TimeUnit.MILLISECONDS);
+			}
+			future = pending.computeIfAbsent(product, p -> new CompletableFuture<>());
+			if (pending.size() >= maxBatchSize) {
+				full = pending;
+				pending = null;
+			}
+		}
+		if (full != null) {
+			flush(full);
+		}
+		// callers sharing a product must not be able to cancel each other's answer.
+		return future.thenApply(Function.identity());
+	}
+
+	@Override
+	public CompletableFuture<Map<String, Double>> getPricesAsync(Collection<String> products) {
+		return shop.getPricesAsync(products);
+	}
+
+	private void flushIfPending(Map<String, CompletableFuture<Double>> batch) {
+		synchronized (this) {
+			if (pending != batch) {
+				// already sent because it was full.
+				return;
+			}
+			pending = null;
+		}
+		flush(batch);
+	}
+
+	private void flush(Map<String, CompletableFuture<Double>> batch) {
+		shop.getPricesAsync(batch.keySet()).whenComplete((prices, ex) -> {
+			for (Map.Entry<String, CompletableFuture<Double>> entry : batch.entrySet()) {
+				if (ex != null) {
+					entry.getValue().completeExceptionally(ex);
+				} else {
+					entry.getValue().complete(prices.get(entry.getKey()));
+				}
+			}
+		});
+	}
+
+}
@@ -0,0 +1,186 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+
+/**
+ * Put in front of a shop to remember prices for a while.
+ *
+ * A price is kept for ttl, and at most maxSize prices are kept. When full, the least recently used price is dropped.
+ * Callers missing the same product at the same time wait for one request to the shop instead of sending one each.
+ *
+ * @author User
+ *
+ */
+public class CachingShop extends Shop {
+
+	private final Shop shop;
+	private final long ttlNanos;
+	private final Map<String, CachedPrice> cache;
+	private final ConcurrentMap<String, CompletableFuture<Double>> loading = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder loads = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public CachingShop(Shop shop_, long ttl_, TimeUnit unit_, int maxSize_) {
+		super();
+		if (ttl_ <= 0 || maxSize_ < 1) {
+			throw new IllegalArgumentException("ttl [" + ttl_ + "] maxSize [" + maxSize_ + "]");
+		}
+		this.shop = shop_;
+		this.ttlNanos = unit_.toNanos(ttl_);
+		// access order, so the eldest entry is the least recently used one.
+		this.cache = new LinkedHashMap<String, CachedPrice>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedPrice> eldest) {
+				if (size() > maxSize_) {
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	@Override
+	public CompletableFuture<Double> getPriceAsync(String product) {
+		Double price = lookup(product);
+		if (price != null) {
+			hits.increment();
+			return CompletableFuture.completedFuture(price);
+		}
+		misses.increment();
+
+		CompletableFuture<Double> created = new CompletableFuture<>();
+		CompletableFuture<Double> existing = loading.putIfAbsent(product, created);
+		if (existing == null) {
+			// the last request may have stored the price and left between the lookup and putIfAbsent.
+			Double stored = lookup(product);
+			if (stored != null) {
+				loading.remove(product, created);
+				created.complete(stored);
+				return created.thenApply(Function.identity());
+			}
+			loads.increment();
+			CompletableFuture<Double> request;
+			try {
+				request = shop.getPriceAsync(product);
+			} catch (RuntimeException e) {
+				// otherwise every later caller would wait on created forever.
+				loading.remove(product, created);
+				created.completeExceptionally(e);
+				return created.thenApply(Function.identity());
+			}
+			request.whenComplete((p, ex) -> {
+				if (ex == null) {
+					store(product, p);
+				}
+				// stored before removed, so a caller who gets in after the removal finds the price on its second look.
+				loading.remove(product, created);
+				if (ex == null) {
+					created.complete(p);
+				} else {
+					created.completeExceptionally(ex);
+				}
+			});
+			existing = created;
+		}
+		// callers sharing a request must not be able to cancel each other's answer.
+		return existing.thenApply(Function.identity());
+	}
+
+	/**
+	 * Each product goes through the cache, so only the missing ones are asked for.
+	 */
+	@Override
+	public CompletableFuture<Map<String, Double>> getPricesAsync(Collection<String> products) {
+		List<String> batch = new ArrayList<>(products);
+		List<CompletableFuture<Double>> futures = batch.stream().map(this::getPriceAsync).collect(Collectors.toList());
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+			Map<String, Double> prices = new LinkedHashMap<>();
+			for (int i = 0; i < batch.size(); i++) {
+				prices.put(batch.get(i), futures.get(i).join());
+			}
+			return prices;
+		});
+	}
+
+	private Double lookup(String product) {
+		synchronized (cache) {
+			CachedPrice cached = cache.get(product);
+			if (cached == null) {
+				return null;
+			}
+			if (System.nanoTime() - cached.expiresAtNanos >= 0) {
+				cache.remove(product);
+				evictions.increment();
+				return null;
+			}
+			return cached.price;
+		}
+	}
+
+	private void store(String product, double price) {
+		synchronized (cache) {
+			cache.put(product, new CachedPrice(price, System.nanoTime() + ttlNanos));
+		}
+	}
+
+	public int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * Number of requests answered from the cache.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Number of requests not answered from the cache, including the ones waiting for another caller's request.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Number of requests actually sent to the shop.
+	 */
+	public long getLoadCount() {
+		return loads.sum();
+	}
+
+	/**
+	 * Number of prices dropped, because the cache was full or the price had expired.
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	private static final class CachedPrice {
+		private final double price;
+		private final long expiresAtNanos;
+
+		private CachedPrice(double price_, long expiresAtNanos_) {
+			this.price = price_;
+			this.expiresAtNanos = expiresAtNanos_;
+		}
+	}
+
+}
@@ -0,0 +1,430 @@
+
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Names in named groups, like the Map&lt;String, List&lt;Name&gt;&gt; of
+ * ComplicatedStreamTest, with views which are kept up to date as names are
+ * added, removed or changed, instead of streaming every group again on each
+ * read.
+ *
+ * <pre>
+ * View pauls = names.register(n -&gt; n.getFirstName().equals("Paul"));
+ * pauls.get("Group D")   - the Pauls of Group D, in the order they were added.
+ * pauls.count("Group D") - how many, without making a list.
+ * pauls.asMap()          - every group, the same as filterValue() builds.
+ * </pre>
+ *
+ * add() and remove() test the one name against each view. A Name can be
+ * changed, so change it through update(), which tests it again in every group
+ * holding it. Changing it any other way leaves the views out of date.
+ *
+ * Names are told apart by identity, not equals(), so a name keeps its place
+ * when update() changes its hash code. The same Name can be in many groups,
+ * but only once in each.
+ *
+ * Writers take a lock, readers do not. Before it lets go of the lock, a writer
+ * publishes new unmodifiable copies of the lists and maps it changed, through
+ * volatile fields, so a read never waits for a writer. The copies are made
+ * once per change, not on every read, and a list nobody changed is kept. So a
+ * write costs a copy of each list it changes.
+ *
+ * @author aus
+ */
+public final class GroupedNames
+{
+    private final Object lock = new Object();
+
+    // guarded by lock
+    private final Map<String, Members> groups = new LinkedHashMap<>();
+    private final Map<Name, List<Entry>> index = new IdentityHashMap<>();
+    private final Set<Members> staleMembers = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<View> staleViews = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long sequence;
+    private boolean writing;
+
+    private final Map<String, Members> readable = new ConcurrentHashMap<>();
+    private final List<View> views = new CopyOnWriteArrayList<>();
+    private volatile Set<String> groupNames = Collections.emptySet();
+
+    public static GroupedNames of(Map<String, List<Name>> map)
+    {
+        GroupedNames names = new GroupedNames();
+        // one write, so each list is copied once and not once per name.
+        names.write(() -> {
+            map.forEach((group, list) -> {
+                names.addGroup(group);
+                list.forEach(name -> names.add(group, name));
+            });
+            return null;
+        });
+        return names;
+    }
+
+    /**
+     * Adds an empty group, so views list it before it has any name.
+     */
+    public void addGroup(String group)
+    {
+        write(() -> members(group));
+    }
+
+    /**
+     * @return false when the name is already in the group.
+     */
+    public boolean add(String group, Name name)
+    {
+        return write(() -> {
+            Members members = members(group);
+            List<Entry> entries = index.computeIfAbsent(name, n -> new ArrayList<>(1));
+            if (find(entries, members) != null)
+            {
+                return false;
+            }
+            Entry entry = new Entry(members, sequence++);
+            entries.add(entry);
+            members.put(entry.sequence, name);
+            for (View view : views)
+            {
+                if (view.predicate.test(name))
+                {
+                    view.members(members.group).put(entry.sequence, name);
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * The group stays, even when it is left empty.
+     *
+     * @return false when the name is not in the group.
+     */
+    public boolean remove(String group, Name name)
+    {
+        return write(() -> {
+            List<Entry> entries = index.get(name);
+            Members members = groups.get(group);
+            Entry entry = entries == null || members == null ? null : find(entries, members);
+            if (entry == null)
+            {
+                return false;
+            }
+            entries.remove(entry);
+            if (entries.isEmpty())
+            {
+                index.remove(name);
+            }
+            members.remove(entry.sequence);
+            for (View view : views)
+            {
+                view.members(group).remove(entry.sequence);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Changes the name, e.g. update(name, n -&gt; n.setFirstName("Paul")), and
+     * moves it in or out of each view, in every group holding it.
+     *
+     * @return false when the name is in no group, and was not changed.
+     */
+    public boolean update(Name name, Consumer<? super Name> change)
+    {
+        return write(() -> {
+            List<Entry> entries = index.get(name);
+            if (entries == null)
+            {
+                return false;
+            }
+            change.accept(name);
+            for (View view : views)
+            {
+                boolean matches = view.predicate.test(name);
+                for (Entry entry : entries)
+                {
+                    Members members = view.members(entry.group.group);
+                    if (matches)
+                    {
+                        members.put(entry.sequence, name);
+                    }
+                    else
+                    {
+                        members.remove(entry.sequence);
+                    }
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Every name of the group, empty for an unknown group.
+     */
+    public List<Name> get(String group)
+    {
+        Members members = readable.get(group);
+        return members == null ? Collections.emptyList() : members.list;
+    }
+
+    public int count(String group)
+    {
+        Members members = readable.get(group);
+        return members == null ? 0 : members.count;
+    }
+
+    /**
+     * Group names, in the order they were added.
+     */
+    public Set<String> groups()
+    {
+        return groupNames;
+    }
+
+    /**
+     * The view is filled from the names already added, and kept up to date
+     * from then on. The predicate must only read the name.
+     */
+    public View register(Predicate<? super Name> predicate)
+    {
+        return write(() -> {
+            View view = new View(predicate);
+            for (Members members : groups.values())
+            {
+                Members matching = view.members(members.group);
+                members.names.forEach((sequence, name) -> {
+                    if (predicate.test(name))
+                    {
+                        matching.put(sequence, name);
+                    }
+                });
+            }
+            views.add(view);
+            return view;
+        });
+    }
+
+    /**
+     * The view is no longer kept up to date, and keeps what it had.
+     */
+    public void unregister(View view)
+    {
+        synchronized (lock)
+        {
+            views.remove(view);
+        }
+    }
+
+    /**
+     * Runs the change with the lock held, then publishes what it changed, so
+     * readers see each change whole. A write inside another one leaves the
+     * publishing to the outer one.
+     */
+    private <T> T write(Supplier<T> change)
+    {
+        synchronized (lock)
+        {
+            boolean outer = !writing;
+            writing = true;
+            try
+            {
+                return change.get();
+            }
+            finally
+            {
+                if (outer)
+                {
+                    writing = false;
+                    publish();
+                }
+            }
+        }
+    }
+
+    private void publish()
+    {
+        for (Members members : staleMembers)
+        {
+            members.publish();
+        }
+        staleMembers.clear();
+        for (View view : staleViews)
+        {
+            view.publish();
+        }
+        staleViews.clear();
+    }
+
+    private Members members(String group)
+    {
+        Members members = groups.get(group);
+        if (members == null)
+        {
+            members = new Members(group, null);
+            groups.put(group, members);
+            readable.put(group, members);
+            groupNames = Collections.unmodifiableSet(new LinkedHashSet<>(groups.keySet()));
+            for (View view : views)
+            {
+                view.members(group);
+            }
+        }
+        return members;
+    }
+
+    private static Entry find(List<Entry> entries, Members members)
+    {
+        for (Entry entry : entries)
+        {
+            if (entry.group == members)
+            {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The names of one group which match a predicate, kept up to date by
+     * GroupedNames.
+     */
+    public final class View
+    {
+        private final Predicate<? super Name> predicate;
+
+        // guarded by lock, readers use readable.
+        private final Map<String, Members> groupMembers = new LinkedHashMap<>();
+        private final Map<String, Members> readable = new ConcurrentHashMap<>();
+        private volatile Map<String, List<Name>> map = Collections.emptyMap();
+
+        private View(Predicate<? super Name> predicate)
+        {
+            super();
+            this.predicate = predicate;
+        }
+
+        /**
+         * The matching names of the group, in the order they were added.
+         */
+        public List<Name> get(String group)
+        {
+            Members members = readable.get(group);
+            return members == null ? Collections.emptyList() : members.list;
+        }
+
+        public int count(String group)
+        {
+            Members members = readable.get(group);
+            return members == null ? 0 : members.count;
+        }
+
+        /**
+         * Matching names in every group, an empty list for a group with none.
+         */
+        public Map<String, List<Name>> asMap()
+        {
+            return map;
+        }
+
+        /**
+         * Called with the lock held, after the lists of the view.
+         */
+        private void publish()
+        {
+            Map<String, List<Name>> copy = new LinkedHashMap<>();
+            groupMembers.forEach((group, members) -> copy.put(group, members.list));
+            map = Collections.unmodifiableMap(copy);
+        }
+
+        /**
+         * Called with the lock held.
+         */
+        private Members members(String group)
+        {
+            Members members = groupMembers.get(group);
+            if (members == null)
+            {
+                members = new Members(group, this);
+                groupMembers.put(group, members);
+                readable.put(group, members);
+                staleViews.add(this);
+            }
+            return members;
+        }
+    }
+
+    /**
+     * Names by the sequence they were added with, so they stay in order and
+     * can be found without a scan. Changed with the lock held, read through
+     * count and list.
+     */
+    private final class Members
+    {
+        private final String group;
+        private final View view;
+        private final TreeMap<Long, Name> names = new TreeMap<>();
+        private volatile int count;
+        private volatile List<Name> list = Collections.emptyList();
+
+        Members(String group, View view)
+        {
+            super();
+            this.group = group;
+            this.view = view;
+        }
+
+        void put(long sequence, Name name)
+        {
+            if (names.put(sequence, name) == null)
+            {
+                staleMembers.add(this);
+            }
+        }
+
+        void remove(long sequence)
+        {
+            if (names.remove(sequence) != null)
+            {
+                staleMembers.add(this);
+            }
+        }
+
+        void publish()
+        {
+            list = Collections.unmodifiableList(new ArrayList<>(names.values()));
+            count = list.size();
+            if (view != null)
+            {
+                staleViews.add(view);
+            }
+        }
+    }
+
+    private static final class Entry
+    {
+        private final Members group;
+        private final long sequence;
+
+        Entry(Members group, long sequence)
+        {
+            super();
+            this.group = group;
+            this.sequence = sequence;
+        }
+    }
+}
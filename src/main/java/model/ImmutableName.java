@@ -0,0 +1,172 @@
+
+package model;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A Name which cannot change, so its hash code is worked out once, when it is
+ * created.
+ *
+ * distinct() and HashMap keys call hashCode() and equals() over and over.
+ * Here hashCode() is a field read, and equals() returns straight away for the
+ * same instance, or for a different hash code, before comparing any String.
+ * With an Interner, equal names are the same instance, so equals() hardly
+ * ever gets to the strings.
+ *
+ * Moving from Name : name.toImmutable() gives an ImmutableName, and the
+ * withFirstName() / withLastName() / withGender() methods replace the
+ * setters. toName() gives back a mutable copy for code still needing one.
+ *
+ * An ImmutableName is never equal to a Name, even with the same fields.
+ *
+ * @author aus
+ */
+public final class ImmutableName
+{
+    private final String firstName, lastName;
+    private final Gender gender;
+    private final int hash;
+
+    private ImmutableName(String firstName, String lastName, Gender gender)
+    {
+        super();
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.gender = gender;
+        this.hash = hash(firstName, lastName, gender);
+    }
+
+    public static ImmutableName of(String firstName, String lastName, Gender gender)
+    {
+        return new ImmutableName(firstName, lastName, gender);
+    }
+
+    public static ImmutableName of(Name name)
+    {
+        return new ImmutableName(name.getFirstName(), name.getLastName(), name.getGender());
+    }
+
+    public String getFirstName()
+    {
+        return firstName;
+    }
+
+    public String getLastName()
+    {
+        return lastName;
+    }
+
+    public Gender getGender()
+    {
+        return gender;
+    }
+
+    public boolean isMale()
+    {
+        return this.gender == Gender.M;
+    }
+
+    public boolean isFemale()
+    {
+        return this.gender == Gender.F;
+    }
+
+    public ImmutableName withFirstName(String firstName)
+    {
+        return new ImmutableName(firstName, lastName, gender);
+    }
+
+    public ImmutableName withLastName(String lastName)
+    {
+        return new ImmutableName(firstName, lastName, gender);
+    }
+
+    public ImmutableName withGender(Gender gender)
+    {
+        return new ImmutableName(firstName, lastName, gender);
+    }
+
+    public Name toName()
+    {
+        return new Name(firstName, lastName, gender);
+    }
+
+    /**
+     * Same value as Name.hashCode() for the same fields.
+     */
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof ImmutableName))
+            return false;
+        ImmutableName other = (ImmutableName) obj;
+        if (hash != other.hash || gender != other.gender)
+            return false;
+        return equal(firstName, other.firstName)
+                && equal(lastName, other.lastName);
+    }
+
+    @Override
+    public String toString()
+    {
+        return firstName + " " + lastName + " (" + gender + ")";
+    }
+
+    private static boolean equal(String a, String b)
+    {
+        return a == b || (a != null && a.equals(b));
+    }
+
+    private static int hash(String firstName, String lastName, Gender gender)
+    {
+        final int prime = 31;
+        int result = 1;
+        result =
+                prime * result
+                        + ((firstName == null) ? 0 : firstName.hashCode());
+        result = prime * result + ((gender == null) ? 0 : gender.hashCode());
+        result =
+                prime * result + ((lastName == null) ? 0 : lastName.hashCode());
+        return result;
+    }
+
+    /**
+     * Hands out one instance for each distinct name. Names are kept for as
+     * long as the interner is, so use one per data set rather than one for
+     * the whole application.
+     */
+    public static final class Interner
+    {
+        private final ConcurrentMap<ImmutableName, ImmutableName> names = new ConcurrentHashMap<>();
+
+        public ImmutableName intern(ImmutableName name)
+        {
+            ImmutableName existing = names.putIfAbsent(name, name);
+            return existing == null ? name : existing;
+        }
+
+        public ImmutableName intern(String firstName, String lastName, Gender gender)
+        {
+            return intern(new ImmutableName(firstName, lastName, gender));
+        }
+
+        public ImmutableName intern(Name name)
+        {
+            return intern(of(name));
+        }
+
+        public int size()
+        {
+            return names.size();
+        }
+    }
+}
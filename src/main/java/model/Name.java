@@ -54,6 +54,14 @@ public class Name
         return this.gender == Gender.F;
     }
 
+    /**
+     * An ImmutableName with the same fields, for distinct() and map keys.
+     */
+    public ImmutableName toImmutable()
+    {
+        return ImmutableName.of(this);
+    }
+
     @Override
     public int hashCode()
     {
@@ -0,0 +1,248 @@
+
+package model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Names kept column by column, instead of a List&lt;Name&gt;.
+ *
+ * <pre>
+ *   firstNames : int[]  - id of the first name in the SymbolTable
+ *   lastNames  : int[]  - id of the last name
+ *   males      : long[] - one bit a row
+ *   females    : long[] - one bit a row ( neither bit when the gender is null )
+ * </pre>
+ *
+ * isMale(), firstNameEquals() and lastNameIn() scan one column from start to
+ * end and give back a Selection, which can be combined with and() / or(). A
+ * scan compares ints and builds 64 rows of the bitmap at a time, without
+ * creating any object but the Selection itself.
+ *
+ * stream() gives back Name objects, so existing stream code keeps working.
+ *
+ * Adding names is not thread safe. Once built, the store can be read by any
+ * number of threads.
+ *
+ * @author aus
+ */
+public final class NameStore
+{
+    private final SymbolTable symbols;
+    private int[] firstNames, lastNames;
+    private long[] males, females;
+    private int size;
+
+    public NameStore()
+    {
+        this(new SymbolTable(), 16);
+    }
+
+    public NameStore(SymbolTable symbols, int capacity)
+    {
+        super();
+        this.symbols = symbols;
+        capacity = Math.max(capacity, 16);
+        this.firstNames = new int[capacity];
+        this.lastNames = new int[capacity];
+        this.males = new long[Selection.wordCount(capacity)];
+        this.females = new long[Selection.wordCount(capacity)];
+    }
+
+    public static NameStore of(Collection<Name> names)
+    {
+        NameStore store = new NameStore(new SymbolTable(), names.size());
+        names.forEach(store::add);
+        return store;
+    }
+
+    public void add(Name name)
+    {
+        add(name.getFirstName(), name.getLastName(), name.getGender());
+    }
+
+    public void add(String firstName, String lastName, Gender gender)
+    {
+        if (size == firstNames.length)
+        {
+            grow();
+        }
+        int row = size++;
+        firstNames[row] = symbols.intern(firstName);
+        lastNames[row] = symbols.intern(lastName);
+        if (gender == Gender.M)
+        {
+            males[row >>> 6] |= 1L << row;
+        }
+        else if (gender == Gender.F)
+        {
+            females[row >>> 6] |= 1L << row;
+        }
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public String getFirstName(int row)
+    {
+        return symbols.symbol(firstNames[checkRow(row)]);
+    }
+
+    public String getLastName(int row)
+    {
+        return symbols.symbol(lastNames[checkRow(row)]);
+    }
+
+    public Gender getGender(int row)
+    {
+        checkRow(row);
+        long bit = 1L << row;
+        if ((males[row >>> 6] & bit) != 0)
+        {
+            return Gender.M;
+        }
+        return (females[row >>> 6] & bit) != 0 ? Gender.F : null;
+    }
+
+    public Name get(int row)
+    {
+        return new Name(getFirstName(row), getLastName(row), getGender(row));
+    }
+
+    public Selection all()
+    {
+        return new Selection(fill(size), size);
+    }
+
+    public Selection isMale()
+    {
+        return new Selection(Arrays.copyOf(males, Selection.wordCount(size)), size);
+    }
+
+    public Selection isFemale()
+    {
+        return new Selection(Arrays.copyOf(females, Selection.wordCount(size)), size);
+    }
+
+    public Selection firstNameEquals(String firstName)
+    {
+        return equalsId(firstNames, symbols.find(firstName));
+    }
+
+    public Selection lastNameEquals(String lastName)
+    {
+        return equalsId(lastNames, symbols.find(lastName));
+    }
+
+    public Selection firstNameIn(String... firstNames)
+    {
+        return inIds(this.firstNames, firstNames);
+    }
+
+    public Selection lastNameIn(String... lastNames)
+    {
+        return inIds(this.lastNames, lastNames);
+    }
+
+    /**
+     * Every name, in row order. The stream is SIZED and splits evenly, so
+     * parallel() works well.
+     */
+    public Stream<Name> stream()
+    {
+        return IntStream.range(0, size).mapToObj(this::get);
+    }
+
+    /**
+     * The picked names, in row order.
+     */
+    public Stream<Name> stream(Selection selection)
+    {
+        if (selection.size() != size)
+        {
+            throw new IllegalArgumentException("Selection over "
+                    + selection.size() + " rows, store has " + size);
+        }
+        return selection.rows().mapToObj(this::get);
+    }
+
+    private Selection equalsId(int[] column, int id)
+    {
+        long[] words = new long[Selection.wordCount(size)];
+        if (id >= 0)
+        {
+            for (int w = 0, base = 0; base < size; w++, base += 64)
+            {
+                int end = Math.min(64, size - base);
+                long word = 0;
+                for (int j = 0; j < end; j++)
+                {
+                    word |= (column[base + j] == id ? 1L : 0L) << j;
+                }
+                words[w] = word;
+            }
+        }
+        return new Selection(words, size);
+    }
+
+    private Selection inIds(int[] column, String[] names)
+    {
+        // a lookup by id, so a row costs one array read whatever the number of names.
+        boolean[] wanted = new boolean[symbols.size()];
+        for (String name : names)
+        {
+            int id = symbols.find(name);
+            if (id >= 0)
+            {
+                wanted[id] = true;
+            }
+        }
+        long[] words = new long[Selection.wordCount(size)];
+        for (int w = 0, base = 0; base < size; w++, base += 64)
+        {
+            int end = Math.min(64, size - base);
+            long word = 0;
+            for (int j = 0; j < end; j++)
+            {
+                int id = column[base + j];
+                word |= (id < wanted.length && wanted[id] ? 1L : 0L) << j;
+            }
+            words[w] = word;
+        }
+        return new Selection(words, size);
+    }
+
+    private static long[] fill(int size)
+    {
+        long[] words = new long[Selection.wordCount(size)];
+        Arrays.fill(words, -1L);
+        if ((size & 63) != 0)
+        {
+            words[words.length - 1] = (1L << size) - 1;
+        }
+        return words;
+    }
+
+    private int checkRow(int row)
+    {
+        if (row < 0 || row >= size)
+        {
+            throw new IndexOutOfBoundsException("row [" + row + "] size ["
+                    + size + "]");
+        }
+        return row;
+    }
+
+    private void grow()
+    {
+        int capacity = firstNames.length * 2;
+        firstNames = Arrays.copyOf(firstNames, capacity);
+        lastNames = Arrays.copyOf(lastNames, capacity);
+        males = Arrays.copyOf(males, Selection.wordCount(capacity));
+        females = Arrays.copyOf(females, Selection.wordCount(capacity));
+    }
+}
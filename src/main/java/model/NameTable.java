@@ -0,0 +1,137 @@
+
+package model;
+
+import java.util.Collection;
+
+/**
+ * Keep lots of names in little memory, when the same first and last names
+ * come up again and again.
+ *
+ * First and last names are interned into one SymbolTable, so each distinct
+ * string is kept once. A name is then a packed long handle :
+ *
+ * <pre>
+ *   bits 33 - 63 : id of the first name
+ *   bits  2 - 32 : id of the last name
+ *   bits  0 -  1 : gender ( 0 null, 1 M, 2 F )
+ * </pre>
+ *
+ * A long[] of handles takes 8 bytes a name, against a Name object and two
+ * String copies for every entry of a List&lt;Name&gt;. getFirstName(),
+ * getLastName() and isMale() read a handle without creating anything.
+ * toName() gives back a Name sharing the interned strings.
+ *
+ * First and last names must not be null.
+ *
+ * @author aus
+ */
+public final class NameTable
+{
+    private static final int GENDER_BITS = 2;
+    private static final int ID_BITS = 31;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+    private static final long GENDER_MASK = (1L << GENDER_BITS) - 1;
+
+    private final SymbolTable symbols;
+
+    public NameTable()
+    {
+        this(new SymbolTable());
+    }
+
+    public NameTable(SymbolTable symbols)
+    {
+        super();
+        this.symbols = symbols;
+    }
+
+    public long handle(String firstName, String lastName, Gender gender)
+    {
+        long first = symbols.intern(firstName);
+        long last = symbols.intern(lastName);
+        return (first << (ID_BITS + GENDER_BITS)) | (last << GENDER_BITS)
+                | genderBits(gender);
+    }
+
+    public long handle(Name name)
+    {
+        return handle(name.getFirstName(), name.getLastName(), name.getGender());
+    }
+
+    public long[] handles(Collection<Name> names)
+    {
+        long[] handles = new long[names.size()];
+        int i = 0;
+        for (Name name : names)
+        {
+            handles[i++] = handle(name);
+        }
+        return handles;
+    }
+
+    public String getFirstName(long handle)
+    {
+        return symbols.symbol(firstNameId(handle));
+    }
+
+    public String getLastName(long handle)
+    {
+        return symbols.symbol(lastNameId(handle));
+    }
+
+    public static int firstNameId(long handle)
+    {
+        return (int) (handle >>> (ID_BITS + GENDER_BITS));
+    }
+
+    public static int lastNameId(long handle)
+    {
+        return (int) ((handle >>> GENDER_BITS) & ID_MASK);
+    }
+
+    public static Gender getGender(long handle)
+    {
+        switch ((int) (handle & GENDER_MASK))
+        {
+            case 1:
+                return Gender.M;
+            case 2:
+                return Gender.F;
+            default:
+                return null;
+        }
+    }
+
+    public static boolean isMale(long handle)
+    {
+        return (handle & GENDER_MASK) == 1;
+    }
+
+    public static boolean isFemale(long handle)
+    {
+        return (handle & GENDER_MASK) == 2;
+    }
+
+    public Name toName(long handle)
+    {
+        return new Name(getFirstName(handle), getLastName(handle), getGender(handle));
+    }
+
+    /**
+     * Same as String.intern(), but for this table only.
+     */
+    public String intern(String symbol)
+    {
+        return symbols.symbol(symbols.intern(symbol));
+    }
+
+    public SymbolTable getSymbols()
+    {
+        return symbols;
+    }
+
+    private static long genderBits(Gender gender)
+    {
+        return gender == null ? 0 : gender.ordinal() + 1;
+    }
+}
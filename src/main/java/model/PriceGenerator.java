@@ -0,0 +1,67 @@
+package model;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * Where a shop gets the random part of its prices from.
+ *
+ * shared() is what a shop always did : one Random for every thread. Its seed is updated by CAS, so threads asking at
+ * the same time keep retrying. threadLocal() and split() give every thread its own random numbers instead.
+ * deterministic() does not keep any state, so the price only depends on the seed and the product.
+ *
+ * @author User
+ *
+ */
+@FunctionalInterface
+public interface PriceGenerator {
+
+	/**
+	 * Return a number between 0 (inclusive) and 1 (exclusive).
+	 */
+	double nextFactor(String product);
+
+	static PriceGenerator shared(Random random) {
+		return product -> random.nextDouble();
+	}
+
+	static PriceGenerator threadLocal() {
+		return product -> ThreadLocalRandom.current().nextDouble();
+	}
+
+	/**
+	 * Each thread gets its own SplittableRandom split from one seeded at the beginning.
+	 */
+	static PriceGenerator split(long seed) {
+		SplittableRandom root = new SplittableRandom(seed);
+		ThreadLocal<SplittableRandom> local = ThreadLocal.withInitial(() -> {
+			synchronized (root) {
+				return root.split();
+			}
+		});
+		return product -> local.get().nextDouble();
+	}
+
+	/**
+	 * Same seed and product, same number, whichever thread asks and however many there are.
+	 *
+	 * Every char of the product is mixed in, not String.hashCode(), so products like "Aa" and "BB" whose 32 bit hash
+	 * codes collide still get different numbers.
+	 */
+	static PriceGenerator deterministic(long seed) {
+		return product -> {
+			// FNV-1a over the chars, then the SplitMix64 finaliser, the same mixing SplittableRandom uses.
+			long h = 0xcbf29ce484222325L;
+			for (int i = 0; i < product.length(); i++) {
+				h = (h ^ product.charAt(i)) * 0x100000001b3L;
+			}
+			long z = seed + h * 0x9e3779b97f4a7c15L;
+			z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+			z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+			z = z ^ (z >>> 31);
+			return (z >>> 11) * 0x1.0p-53;
+		};
+	}
+}
@@ -0,0 +1,38 @@
+package model;
+
+/**
+ * The price of a product in a shop.
+ *
+ * @author User
+ *
+ */
+public final class Quote {
+
+	private final Shop shop;
+	private final String product;
+	private final double price;
+
+	public Quote(Shop shop_, String product_, double price_) {
+		super();
+		this.shop = shop_;
+		this.product = product_;
+		this.price = price_;
+	}
+
+	public Shop getShop() {
+		return shop;
+	}
+
+	public String getProduct() {
+		return product;
+	}
+
+	public double getPrice() {
+		return price;
+	}
+
+	@Override
+	public String toString() {
+		return product + " [" + String.format( "%.2f", price ) + "]";
+	}
+}
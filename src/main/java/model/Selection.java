@@ -0,0 +1,140 @@
+
+package model;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The rows picked by a NameStore predicate, one bit a row.
+ *
+ * and(), or() and andNot() change this selection in place and return it, so
+ * predicates can be combined without creating more bitmaps :
+ *
+ * <pre>
+ * store.isMale().and(store.firstNameEquals("Paul"))
+ * </pre>
+ *
+ * @author aus
+ */
+public final class Selection
+{
+    private final long[] words;
+    private final int size;
+
+    Selection(long[] words, int size)
+    {
+        super();
+        this.words = words;
+        this.size = size;
+    }
+
+    Selection(int size)
+    {
+        this(new long[wordCount(size)], size);
+    }
+
+    static int wordCount(int size)
+    {
+        return (size + 63) >>> 6;
+    }
+
+    /**
+     * Number of rows the selection is over, picked or not.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean get(int row)
+    {
+        return (words[row >>> 6] & (1L << row)) != 0;
+    }
+
+    public Selection and(Selection other)
+    {
+        check(other);
+        for (int i = 0; i < words.length; i++)
+        {
+            words[i] &= other.words[i];
+        }
+        return this;
+    }
+
+    public Selection or(Selection other)
+    {
+        check(other);
+        for (int i = 0; i < words.length; i++)
+        {
+            words[i] |= other.words[i];
+        }
+        return this;
+    }
+
+    public Selection andNot(Selection other)
+    {
+        check(other);
+        for (int i = 0; i < words.length; i++)
+        {
+            words[i] &= ~other.words[i];
+        }
+        return this;
+    }
+
+    public Selection copy()
+    {
+        return new Selection(Arrays.copyOf(words, words.length), size);
+    }
+
+    /**
+     * Number of rows picked.
+     */
+    public int cardinality()
+    {
+        int count = 0;
+        for (long word : words)
+        {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * The next picked row from the given one, or -1 when there is none.
+     */
+    public int nextSetBit(int from)
+    {
+        if (from >= size)
+        {
+            return -1;
+        }
+        int i = from >>> 6;
+        long word = words[i] & (-1L << from);
+        while (word == 0)
+        {
+            if (++i == words.length)
+            {
+                return -1;
+            }
+            word = words[i];
+        }
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * The picked rows, in order.
+     */
+    public IntStream rows()
+    {
+        return IntStream.range(0, size).filter(this::get);
+    }
+
+    private void check(Selection other)
+    {
+        if (other.size != size)
+        {
+            throw new IllegalArgumentException("Selections over " + size
+                    + " and " + other.size + " rows");
+        }
+    }
+}
@@ -1,29 +1,122 @@
 package model;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 
 /**
- * 
+ *
  * @author User
  *
  */
 public class Shop {
 
-	private Random random = new Random();
-	
+	/**
+	 * Simulated round-trip to the shop.
+	 */
+	private static final long DELAY_MS = 1000L;
+
+	/**
+	 * One timer thread shared by every shop. A pending quote is only an entry in its delay queue,
+	 * so no thread is parked while the price is on its way. The timer only hands out answers, prices are worked out by
+	 * the thread asking for them, so the PriceGenerator is called by as many threads as there are callers.
+	 */
+	static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "shop-timer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final PriceGenerator priceGenerator;
+
+	public Shop() {
+		this(PriceGenerator.shared(new Random()));
+	}
+
+	public Shop(PriceGenerator priceGenerator_) {
+		super();
+		this.priceGenerator = priceGenerator_;
+	}
+
 	/**
 	 * Wait for 1 second.
 	 */
 	public double getPrice(String product)  {
 		try {
-			Thread.sleep(1000L);
+			return getPriceAsync(product).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the price of " + product, e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Cannot get the price of " + product, e.getCause());
+		}
+	}
+
+	/**
+	 * Return straight away. The future is completed by the shared timer after 1 second.
+	 *
+	 * Note : dependent stages without an executor run on the timer thread, so use the *Async variants for slow work.
+	 */
+	public CompletableFuture<Double> getPriceAsync(String product) {
+		return respondLater(() -> calculatePrice(product));
+	}
+
+	/**
+	 * Wait for 1 second, however many products are asked for.
+	 */
+	public Map<String, Double> getPrices(Collection<String> products) {
+		try {
+			return getPricesAsync(products).get();
 		} catch (InterruptedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the prices of " + products, e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Cannot get the prices of " + products, e.getCause());
 		}
-		return random.nextDouble() * product.charAt(0) + product.charAt(1);
 	}
 
+	/**
+	 * One round-trip for the whole batch. The map keeps the order of the products.
+	 */
+	public CompletableFuture<Map<String, Double>> getPricesAsync(Collection<String> products) {
+		List<String> batch = new ArrayList<>(products);
+		return respondLater(() -> {
+			Map<String, Double> prices = new LinkedHashMap<>();
+			for (String product : batch) {
+				prices.put(product, calculatePrice(product));
+			}
+			return prices;
+		});
+	}
+
+	/**
+	 * Work out the response now, on the calling thread, and hand it out after the delay.
+	 */
+	private <T> CompletableFuture<T> respondLater(Supplier<T> response) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		T value;
+		try {
+			value = response.get();
+		} catch (RuntimeException e) {
+			TIMER.schedule(() -> future.completeExceptionally(e), DELAY_MS, TimeUnit.MILLISECONDS);
+			return future;
+		}
+		TIMER.schedule(() -> future.complete(value), DELAY_MS, TimeUnit.MILLISECONDS);
+		return future;
+	}
+
+	private double calculatePrice(String product) {
+		return priceGenerator.nextFactor(product) * product.charAt(0) + product.charAt(1);
+	}
 
 }
@@ -0,0 +1,110 @@
+
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Give each distinct string an int id, starting at 0.
+ *
+ * Every distinct string is kept once, however many times it is interned. The
+ * index is an open addressing table of ids, so looking a string up does not
+ * create any object.
+ *
+ * intern() is synchronized. symbol() does not lock, and is safe for any id
+ * already handed out by intern().
+ *
+ * @author aus
+ */
+public final class SymbolTable
+{
+    private volatile String[] symbols = new String[16];
+    private int size;
+
+    /**
+     * id + 1 of the symbol in each slot, 0 when the slot is empty.
+     */
+    private int[] index = new int[32];
+
+    public synchronized int intern(String symbol)
+    {
+        int slot = slot(symbol);
+        if (index[slot] != 0)
+        {
+            return index[slot] - 1;
+        }
+        String[] current = symbols;
+        if (size == current.length)
+        {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = symbol;
+        int id = size++;
+        index[slot] = id + 1;
+        // the volatile write publishes the new symbol to symbol().
+        symbols = current;
+        if (size * 2 > index.length)
+        {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * The id of the symbol, or -1 if it has never been interned.
+     */
+    public synchronized int find(String symbol)
+    {
+        return index[slot(symbol)] - 1;
+    }
+
+    public String symbol(int id)
+    {
+        return symbols[id];
+    }
+
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * Slot holding the symbol, or the empty slot where it would go.
+     */
+    private int slot(String symbol)
+    {
+        int mask = index.length - 1;
+        int slot = spread(symbol.hashCode()) & mask;
+        String[] current = symbols;
+        while (index[slot] != 0 && !current[index[slot] - 1].equals(symbol))
+        {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash()
+    {
+        int[] old = index;
+        index = new int[old.length * 2];
+        int mask = index.length - 1;
+        String[] current = symbols;
+        for (int entry : old)
+        {
+            if (entry != 0)
+            {
+                int slot = spread(current[entry - 1].hashCode()) & mask;
+                while (index[slot] != 0)
+                {
+                    slot = (slot + 1) & mask;
+                }
+                index[slot] = entry;
+            }
+        }
+    }
+
+    private static int spread(int h)
+    {
+        int x = h * 0x9e3779b9;
+        return x ^ (x >>> 16);
+    }
+}
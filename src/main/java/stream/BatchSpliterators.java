@@ -0,0 +1,289 @@
+
+package stream;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Spliterators for sources which can only be walked, like LinkedList or any
+ * Iterator, which split well enough for parallelStream().
+ *
+ * trySplit() copies the next batch of elements into an array and hands it
+ * out as an array spliterator, which is SIZED and splits evenly in halves.
+ * Each batch is one unit bigger than the last, so the first one is ready
+ * quickly and a big source is not cut into too many batches.
+ *
+ * The JDK does the same for LinkedList, but always with a unit of 1024. That
+ * is about 44 batches for a million elements, and a collect() joins each
+ * batch onto everything collected after it, copying the lists 44 times over.
+ * When the size is known, the unit here is picked to give about 2 batches
+ * per thread of the common pool instead.
+ *
+ * ofLong() copies into long[] batches, so a pipeline of longs is never boxed
+ * again, even when the source holds Long.
+ *
+ * @author aus
+ */
+public final class BatchSpliterators
+{
+    static final int MIN_BATCH = 1 << 10;
+    static final int MAX_BATCH = 1 << 25;
+
+    private BatchSpliterators()
+    {
+    }
+
+    /**
+     * ORDERED when the collection is a List.
+     */
+    public static <T> Spliterator<T> of(Collection<T> source)
+    {
+        return of(source.iterator(), source.size(), source instanceof List ? Spliterator.ORDERED : 0);
+    }
+
+    /**
+     * @param size the number of elements left in the iterator, or -1 when it
+     *             is not known.
+     */
+    public static <T> Spliterator<T> of(Iterator<? extends T> iterator, long size, int characteristics)
+    {
+        return new OfRef<>(iterator, size, characteristics);
+    }
+
+    public static <T> Stream<T> stream(Collection<T> source, boolean parallel)
+    {
+        return StreamSupport.stream(of(source), parallel);
+    }
+
+    /**
+     * Unboxes the elements while copying them into long[] batches.
+     */
+    public static <T> Spliterator.OfLong ofLong(Collection<T> source, ToLongFunction<? super T> mapper)
+    {
+        Iterator<T> iterator = source.iterator();
+        PrimitiveIterator.OfLong longs = new PrimitiveIterator.OfLong()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public long nextLong()
+            {
+                return mapper.applyAsLong(iterator.next());
+            }
+        };
+        return ofLong(longs, source.size(), source instanceof List ? Spliterator.ORDERED : 0);
+    }
+
+    /**
+     * @param size the number of longs left in the iterator, or -1 when it is
+     *             not known.
+     */
+    public static Spliterator.OfLong ofLong(PrimitiveIterator.OfLong iterator, long size, int characteristics)
+    {
+        return new OfLong(iterator, size, characteristics);
+    }
+
+    public static <T> LongStream longStream(Collection<T> source, ToLongFunction<? super T> mapper,
+                                            boolean parallel)
+    {
+        return StreamSupport.longStream(ofLong(source, mapper), parallel);
+    }
+
+    /**
+     * The first batch size, one unit. k batches of 1, 2 .. k units hold
+     * k(k+1)/2 units.
+     */
+    static int batchUnit(long size, int parallelism)
+    {
+        if (size < 0 || size == Long.MAX_VALUE)
+        {
+            return MIN_BATCH;
+        }
+        long batches = Math.max(2, 2L * parallelism);
+        long unit = size / (batches * (batches + 1) / 2);
+        return (int) Math.max(MIN_BATCH, Math.min(unit, MAX_BATCH));
+    }
+
+    private static int characteristics(long size, int characteristics)
+    {
+        return size < 0 ? characteristics & ~(Spliterator.SIZED | Spliterator.SUBSIZED)
+                : characteristics | Spliterator.SIZED | Spliterator.SUBSIZED;
+    }
+
+    private static int nextBatch(int batch, int unit, long estimate)
+    {
+        int next = Math.min(batch + unit, MAX_BATCH);
+        return estimate < next ? (int) estimate : next;
+    }
+
+    static final class OfRef<T> implements Spliterator<T>
+    {
+        private final Iterator<? extends T> iterator;
+        private final int characteristics;
+        private final int unit;
+        private long estimate;
+        private int batch;
+
+        OfRef(Iterator<? extends T> iterator, long size, int characteristics)
+        {
+            super();
+            this.iterator = iterator;
+            this.characteristics = BatchSpliterators.characteristics(size, characteristics);
+            this.estimate = size < 0 ? Long.MAX_VALUE : size;
+            this.unit = batchUnit(size, ForkJoinPool.getCommonPoolParallelism());
+        }
+
+        @Override
+        public Spliterator<T> trySplit()
+        {
+            if (estimate <= 1 || !iterator.hasNext())
+            {
+                return null;
+            }
+            int n = nextBatch(batch, unit, estimate);
+            Object[] elements = new Object[n];
+            int j = 0;
+            do
+            {
+                elements[j++] = iterator.next();
+            }
+            while (j < n && iterator.hasNext());
+            batch = j;
+            if (estimate != Long.MAX_VALUE)
+            {
+                estimate -= j;
+            }
+            return Spliterators.spliterator(elements, 0, j, characteristics);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action)
+        {
+            if (iterator.hasNext())
+            {
+                action.accept(iterator.next());
+                if (estimate != Long.MAX_VALUE)
+                {
+                    estimate--;
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action)
+        {
+            iterator.forEachRemaining(action);
+            if (estimate != Long.MAX_VALUE)
+            {
+                estimate = 0;
+            }
+        }
+
+        @Override
+        public long estimateSize()
+        {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics()
+        {
+            return characteristics;
+        }
+    }
+
+    static final class OfLong implements Spliterator.OfLong
+    {
+        private final PrimitiveIterator.OfLong iterator;
+        private final int characteristics;
+        private final int unit;
+        private long estimate;
+        private int batch;
+
+        OfLong(PrimitiveIterator.OfLong iterator, long size, int characteristics)
+        {
+            super();
+            this.iterator = iterator;
+            this.characteristics = BatchSpliterators.characteristics(size, characteristics);
+            this.estimate = size < 0 ? Long.MAX_VALUE : size;
+            this.unit = batchUnit(size, ForkJoinPool.getCommonPoolParallelism());
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit()
+        {
+            if (estimate <= 1 || !iterator.hasNext())
+            {
+                return null;
+            }
+            int n = nextBatch(batch, unit, estimate);
+            long[] values = new long[n];
+            int j = 0;
+            do
+            {
+                values[j++] = iterator.nextLong();
+            }
+            while (j < n && iterator.hasNext());
+            batch = j;
+            if (estimate != Long.MAX_VALUE)
+            {
+                estimate -= j;
+            }
+            return Spliterators.spliterator(values, 0, j, characteristics);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action)
+        {
+            if (iterator.hasNext())
+            {
+                action.accept(iterator.nextLong());
+                if (estimate != Long.MAX_VALUE)
+                {
+                    estimate--;
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action)
+        {
+            iterator.forEachRemaining(action);
+            if (estimate != Long.MAX_VALUE)
+            {
+                estimate = 0;
+            }
+        }
+
+        @Override
+        public long estimateSize()
+        {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics()
+        {
+            return characteristics;
+        }
+    }
+}
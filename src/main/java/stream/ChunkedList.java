@@ -0,0 +1,109 @@
+
+package stream;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A read only list made of other lists put end to end.
+ *
+ * Joining two chunked lists only joins their lists of chunks, the elements are
+ * never copied. get() finds the chunk by binary search on the chunk offsets,
+ * which are worked out the first time the list is read.
+ *
+ * @author aus
+ */
+final class ChunkedList<T> extends AbstractList<T> implements RandomAccess
+{
+    private final List<List<T>> chunks;
+    private int[] offsets;
+
+    ChunkedList()
+    {
+        this(new ArrayList<>());
+    }
+
+    ChunkedList(List<List<T>> chunks)
+    {
+        super();
+        this.chunks = chunks;
+    }
+
+    /**
+     * The list being filled at the end. Only used while collecting.
+     */
+    List<T> last()
+    {
+        if (chunks.isEmpty())
+        {
+            chunks.add(new ArrayList<>());
+        }
+        return chunks.get(chunks.size() - 1);
+    }
+
+    ChunkedList<T> append(ChunkedList<T> other)
+    {
+        for (List<T> chunk : other.chunks)
+        {
+            if (!chunk.isEmpty())
+            {
+                chunks.add(chunk);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public T get(int index)
+    {
+        int[] starts = offsets();
+        if (index < 0 || index >= starts[starts.length - 1])
+        {
+            throw new IndexOutOfBoundsException("index [" + index + "] size ["
+                    + starts[starts.length - 1] + "]");
+        }
+        int chunk = Arrays.binarySearch(starts, 0, chunks.size(), index);
+        if (chunk < 0)
+        {
+            chunk = -chunk - 2;
+        }
+        else
+        {
+            // skip empty chunks starting at the same index.
+            while (starts[chunk + 1] == index)
+            {
+                chunk++;
+            }
+        }
+        return chunks.get(chunk).get(index - starts[chunk]);
+    }
+
+    @Override
+    public int size()
+    {
+        int[] starts = offsets();
+        return starts[starts.length - 1];
+    }
+
+    /**
+     * offsets[i] is the index of the first element of chunk i, and the last
+     * one is the size.
+     */
+    private int[] offsets()
+    {
+        int[] starts = offsets;
+        if (starts == null || starts.length != chunks.size() + 1)
+        {
+            starts = new int[chunks.size() + 1];
+            for (int i = 0; i < chunks.size(); i++)
+            {
+                starts[i + 1] = starts[i] + chunks.get(i).size();
+            }
+            offsets = starts;
+        }
+        return starts;
+    }
+}
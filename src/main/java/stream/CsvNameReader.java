@@ -0,0 +1,463 @@
+
+package stream;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import model.Gender;
+import model.Name;
+
+/**
+ * Reads first,last,gender lines from a channel, a buffer at a time, without
+ * loading the file or making a String per line.
+ *
+ * Fields are found in place in the byte buffer and handed out as a Record,
+ * which only points into the buffer. The gender byte becomes a Gender
+ * directly, so the only Strings made are the first and last names of each
+ * Name.
+ *
+ * names(FileChannel, true) parses in parallel : the file is split by byte
+ * ranges, and each range reads the lines which start inside it, so a line
+ * crossing the split point is read by exactly one of them.
+ *
+ * Lines end with \n or \r\n, fields are separated by commas. Quoted fields
+ * are not supported. Blank lines are skipped.
+ *
+ * @author aus
+ */
+public final class CsvNameReader
+{
+    static final int BUFFER_BYTES = 1 << 16;
+
+    /**
+     * Ranges smaller than this are not split any more.
+     */
+    static final long MIN_SPLIT_BYTES = 1 << 20;
+
+    private CsvNameReader()
+    {
+    }
+
+    /**
+     * Calls action with each line. The record is reused, it is only valid
+     * inside the call.
+     */
+    public static void forEach(ReadableByteChannel channel, Consumer<? super Record> action) throws IOException
+    {
+        Lines lines = new Lines(channel);
+        Record record = new Record();
+        while (lines.next(record))
+        {
+            action.accept(record);
+        }
+    }
+
+    /**
+     * The names, read lazily as the stream is consumed. An IOException is
+     * thrown as UncheckedIOException.
+     */
+    public static Stream<Name> names(ReadableByteChannel channel)
+    {
+        Lines lines = new Lines(channel);
+        Record record = new Record();
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<Name>(Long.MAX_VALUE,
+                                                                               Spliterator.ORDERED
+                                                                                       | Spliterator.NONNULL)
+        {
+            @Override
+            public boolean tryAdvance(Consumer<? super Name> action)
+            {
+                if (next(lines, record))
+                {
+                    action.accept(record.toName());
+                    return true;
+                }
+                return false;
+            }
+        }, false);
+    }
+
+    /**
+     * The names of a file, which can be parsed in parallel.
+     */
+    public static Stream<Name> names(FileChannel channel, boolean parallel) throws IOException
+    {
+        return StreamSupport.stream(new RangeSpliterator(channel, 0, channel.size()), parallel);
+    }
+
+    private static boolean next(Lines lines, Record record)
+    {
+        try
+        {
+            return lines.next(record);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The fields of one line, as offsets into the read buffer.
+     */
+    public static final class Record
+    {
+        private byte[] bytes;
+        private int[] starts = new int[4];
+        private int[] ends = new int[4];
+        private int count;
+
+        Record()
+        {
+        }
+
+        void set(byte[] buffer, int from, int to)
+        {
+            bytes = buffer;
+            count = 0;
+            int start = from;
+            for (int i = from; i <= to; i++)
+            {
+                if (i == to || buffer[i] == ',')
+                {
+                    if (count == starts.length)
+                    {
+                        starts = Arrays.copyOf(starts, count * 2);
+                        ends = Arrays.copyOf(ends, count * 2);
+                    }
+                    starts[count] = start;
+                    ends[count] = i;
+                    count++;
+                    start = i + 1;
+                }
+            }
+        }
+
+        public int fieldCount()
+        {
+            return count;
+        }
+
+        public int length(int field)
+        {
+            checkField(field);
+            return ends[field] - starts[field];
+        }
+
+        public byte byteAt(int field, int index)
+        {
+            if (index < 0 || index >= length(field))
+            {
+                throw new IndexOutOfBoundsException("index [" + index + "] length [" + length(field) + "]");
+            }
+            return bytes[starts[field] + index];
+        }
+
+        /**
+         * Compares the bytes of the field, without making a String.
+         */
+        public boolean fieldEquals(int field, byte[] value)
+        {
+            int length = length(field);
+            if (length != value.length)
+            {
+                return false;
+            }
+            for (int i = 0, start = starts[field]; i < length; i++)
+            {
+                if (bytes[start + i] != value[i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public long parseLong(int field)
+        {
+            int from = starts[field], to = ends[field];
+            boolean negative = from < to && bytes[from] == '-';
+            int i = negative ? from + 1 : from;
+            if (i == to)
+            {
+                throw new NumberFormatException("Not a number in field " + field);
+            }
+            long value = 0;
+            for (; i < to; i++)
+            {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9)
+                {
+                    throw new NumberFormatException("Not a number in field " + field);
+                }
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+
+        /**
+         * M or F, or null for an empty field.
+         */
+        public Gender gender(int field)
+        {
+            switch (length(field))
+            {
+            case 0:
+                return null;
+            case 1:
+                byte b = bytes[starts[field]];
+                if (b == 'M')
+                    return Gender.M;
+                if (b == 'F')
+                    return Gender.F;
+                break;
+            default:
+                break;
+            }
+            throw new IllegalArgumentException("Not a gender : " + string(field));
+        }
+
+        public String string(int field)
+        {
+            checkField(field);
+            return new String(bytes, starts[field], ends[field] - starts[field], StandardCharsets.UTF_8);
+        }
+
+        public Name toName()
+        {
+            if (count != 3)
+            {
+                throw new IllegalArgumentException("Expected first,last,gender : " + toString());
+            }
+            return new Name(string(0), string(1), gender(2));
+        }
+
+        @Override
+        public String toString()
+        {
+            return count == 0 ? "" : new String(bytes, starts[0], ends[count - 1] - starts[0], StandardCharsets.UTF_8);
+        }
+
+        private void checkField(int field)
+        {
+            if (field < 0 || field >= count)
+            {
+                throw new IndexOutOfBoundsException("field [" + field + "] count [" + count + "]");
+            }
+        }
+    }
+
+    /**
+     * Finds the lines in a growable buffer. For a file range, only the lines
+     * starting in [start, end) are read, using positional reads so ranges
+     * can be read by different threads.
+     */
+    private static final class Lines
+    {
+        private final ReadableByteChannel channel;
+        private final FileChannel file;
+        private final long end;
+        private byte[] buffer = new byte[BUFFER_BYTES];
+        private int position, limit;
+        private long bufferOffset;
+        private long filePosition;
+        private boolean skipFirst;
+        private boolean eof;
+
+        Lines(ReadableByteChannel channel)
+        {
+            this.channel = channel;
+            this.file = null;
+            this.end = Long.MAX_VALUE;
+        }
+
+        Lines(FileChannel file, long start, long end)
+        {
+            this.channel = null;
+            this.file = file;
+            this.end = end;
+            // a line starts at start only if the byte before it is \n.
+            this.skipFirst = start > 0;
+            this.filePosition = skipFirst ? start - 1 : 0;
+            this.bufferOffset = filePosition;
+        }
+
+        boolean next(Record record) throws IOException
+        {
+            if (skipFirst)
+            {
+                skipFirst = false;
+                if (!skipLine())
+                {
+                    return false;
+                }
+            }
+            while (bufferOffset + position < end)
+            {
+                int scan = position;
+                int newLine;
+                while ((newLine = indexOfNewLine(scan)) < 0)
+                {
+                    int scanned = limit - position;
+                    if (!fill())
+                    {
+                        break;
+                    }
+                    scan = position + scanned;
+                }
+                int lineEnd = newLine < 0 ? limit : newLine;
+                if (newLine < 0 && lineEnd == position)
+                {
+                    return false;
+                }
+                int to = lineEnd > position && buffer[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+                int from = position;
+                position = newLine < 0 ? limit : newLine + 1;
+                if (to > from)
+                {
+                    record.set(buffer, from, to);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean skipLine() throws IOException
+        {
+            int newLine;
+            while ((newLine = indexOfNewLine(position)) < 0)
+            {
+                position = limit;
+                if (!fill())
+                {
+                    return false;
+                }
+            }
+            position = newLine + 1;
+            return true;
+        }
+
+        private int indexOfNewLine(int from)
+        {
+            byte[] b = buffer;
+            for (int i = from, n = limit; i < n; i++)
+            {
+                if (b[i] == '\n')
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Moves the unread bytes to the front, grows the buffer if a line
+         * fills it, and reads more. False at the end of the input.
+         */
+        private boolean fill() throws IOException
+        {
+            if (eof)
+            {
+                return false;
+            }
+            if (position > 0)
+            {
+                System.arraycopy(buffer, position, buffer, 0, limit - position);
+                bufferOffset += position;
+                limit -= position;
+                position = 0;
+            }
+            if (limit == buffer.length)
+            {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            ByteBuffer target = ByteBuffer.wrap(buffer, limit, buffer.length - limit);
+            int read;
+            do
+            {
+                read = file != null ? file.read(target, filePosition) : channel.read(target);
+            }
+            while (read == 0);
+            if (read < 0)
+            {
+                eof = true;
+                return false;
+            }
+            filePosition += read;
+            limit += read;
+            return true;
+        }
+    }
+
+    /**
+     * The lines starting in the byte range [start, end) of a file. trySplit()
+     * gives away the first half of the bytes.
+     */
+    private static final class RangeSpliterator implements Spliterator<Name>
+    {
+        private final FileChannel file;
+        private long start;
+        private final long end;
+        private Lines lines;
+        private Record record;
+
+        private RangeSpliterator(FileChannel file, long start, long end)
+        {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public Spliterator<Name> trySplit()
+        {
+            if (lines != null || end - start < 2 * MIN_SPLIT_BYTES)
+            {
+                return null;
+            }
+            long mid = (start + end) >>> 1;
+            RangeSpliterator prefix = new RangeSpliterator(file, start, mid);
+            start = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Name> action)
+        {
+            if (lines == null)
+            {
+                lines = new Lines(file, start, end);
+                record = new Record();
+            }
+            if (next(lines, record))
+            {
+                action.accept(record.toName());
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public long estimateSize()
+        {
+            // bytes, not lines, but it only has to be relative.
+            return end - start;
+        }
+
+        @Override
+        public int characteristics()
+        {
+            return Spliterator.ORDERED | Spliterator.NONNULL;
+        }
+    }
+}
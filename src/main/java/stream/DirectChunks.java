@@ -0,0 +1,152 @@
+
+package stream;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Direct ByteBuffers of the same size, allocated one at a time, for the off
+ * heap columns.
+ *
+ * A direct buffer is normally only given back when the GC collects the
+ * ByteBuffer object, which may be long after it is not needed, as the object
+ * itself is tiny. close() frees the memory straight away through the buffer's
+ * cleaner : sun.misc.Unsafe.invokeCleaner() on JDK 9 or later, the cleaner()
+ * of the buffer on JDK 8. If neither can be reached, the memory is left to
+ * the GC.
+ *
+ * @author aus
+ */
+final class DirectChunks implements AutoCloseable
+{
+    private static final Freer FREER = freer();
+
+    private final int chunkBytes;
+    private ByteBuffer[] chunks = new ByteBuffer[8];
+    private int count;
+    private volatile boolean closed;
+
+    DirectChunks(int chunkBytes)
+    {
+        super();
+        this.chunkBytes = chunkBytes;
+    }
+
+    ByteBuffer add()
+    {
+        checkOpen();
+        if (count == chunks.length)
+        {
+            chunks = Arrays.copyOf(chunks, count * 2);
+        }
+        ByteBuffer chunk = ByteBuffer.allocateDirect(chunkBytes).order(ByteOrder.nativeOrder());
+        chunks[count++] = chunk;
+        return chunk;
+    }
+
+    int count()
+    {
+        return count;
+    }
+
+    long bytes()
+    {
+        return (long) count * chunkBytes;
+    }
+
+    void checkOpen()
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("The column is closed");
+        }
+    }
+
+    boolean isClosed()
+    {
+        return closed;
+    }
+
+    @Override
+    public void close()
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+        for (int i = 0; i < count; i++)
+        {
+            free(chunks[i]);
+            chunks[i] = null;
+        }
+        count = 0;
+    }
+
+    /**
+     * Frees a direct or mapped buffer now. It must not be used afterwards,
+     * reading freed memory can crash the JVM.
+     */
+    static void free(ByteBuffer buffer)
+    {
+        FREER.free(buffer);
+    }
+
+    private interface Freer
+    {
+        void free(ByteBuffer buffer);
+    }
+
+    private static Freer freer()
+    {
+        try
+        {
+            // JDK 9 or later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> invoke(invokeCleaner, unsafe, buffer);
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            // not there, try JDK 8 below
+        }
+        try
+        {
+            Method cleaner = ByteBuffer.allocateDirect(1).getClass().getMethod("cleaner");
+            cleaner.setAccessible(true);
+            Method clean = cleaner.getReturnType().getMethod("clean");
+            clean.setAccessible(true);
+            return buffer -> {
+                Object c = invoke(cleaner, buffer);
+                if (c != null)
+                {
+                    invoke(clean, c);
+                }
+            };
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            return buffer -> {
+                // left to the GC
+            };
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args)
+    {
+        try
+        {
+            return method.invoke(target, args);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Cannot free a direct buffer", e);
+        }
+    }
+}
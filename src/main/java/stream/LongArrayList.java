@@ -0,0 +1,271 @@
+
+package stream;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A growable list of primitive longs, instead of List&lt;Long&gt;.
+ *
+ * An ArrayList&lt;Long&gt; costs a reference plus a Long object for every
+ * element ( about 20 bytes ), and every read goes through the reference and
+ * unboxes. Here an element is 8 bytes in one long[].
+ *
+ * stream() and parallelStream() are LongStreams over a spliterator which is
+ * SIZED, SUBSIZED and ORDERED, and splits the array exactly in half, so fork
+ * join gets even pieces.
+ *
+ * Not thread safe. Do not change the list while a stream over it is running.
+ *
+ * @author aus
+ */
+public final class LongArrayList
+{
+    private long[] elements;
+    private int size;
+
+    public LongArrayList()
+    {
+        this(16);
+    }
+
+    public LongArrayList(int capacity)
+    {
+        super();
+        this.elements = new long[Math.max(capacity, 1)];
+    }
+
+    public static LongArrayList of(long... values)
+    {
+        LongArrayList list = new LongArrayList(values.length);
+        list.addAll(values);
+        return list;
+    }
+
+    public void add(long value)
+    {
+        if (size == elements.length)
+        {
+            grow(size + 1);
+        }
+        elements[size++] = value;
+    }
+
+    public void addAll(long[] values)
+    {
+        addAll(values, 0, values.length);
+    }
+
+    public void addAll(long[] values, int from, int to)
+    {
+        int count = to - from;
+        if (size + count > elements.length)
+        {
+            grow(size + count);
+        }
+        System.arraycopy(values, from, elements, size, count);
+        size += count;
+    }
+
+    public void addAll(LongArrayList other)
+    {
+        addAll(other.elements, 0, other.size);
+    }
+
+    public long get(int index)
+    {
+        checkIndex(index);
+        return elements[index];
+    }
+
+    public long set(int index, long value)
+    {
+        checkIndex(index);
+        long old = elements[index];
+        elements[index] = value;
+        return old;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public void clear()
+    {
+        size = 0;
+    }
+
+    public void sort()
+    {
+        Arrays.sort(elements, 0, size);
+    }
+
+    public void parallelSort()
+    {
+        Arrays.parallelSort(elements, 0, size);
+    }
+
+    /**
+     * Same as Arrays.binarySearch() : the index of the value, or
+     * (-(insertion point) - 1). The list must be sorted.
+     */
+    public int binarySearch(long value)
+    {
+        return Arrays.binarySearch(elements, 0, size, value);
+    }
+
+    public long[] toArray()
+    {
+        return Arrays.copyOf(elements, size);
+    }
+
+    public void trimToSize()
+    {
+        if (elements.length > size)
+        {
+            elements = Arrays.copyOf(elements, Math.max(size, 1));
+        }
+    }
+
+    public Spliterator.OfLong spliterator()
+    {
+        return new LongArraySpliterator(elements, 0, size);
+    }
+
+    public LongStream stream()
+    {
+        return StreamSupport.longStream(spliterator(), false);
+    }
+
+    public LongStream parallelStream()
+    {
+        return StreamSupport.longStream(spliterator(), true);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof LongArrayList))
+            return false;
+        LongArrayList other = (LongArrayList) obj;
+        if (size != other.size)
+            return false;
+        for (int i = 0; i < size; i++)
+        {
+            if (elements[i] != other.elements[i])
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = 1;
+        for (int i = 0; i < size; i++)
+        {
+            result = 31 * result + Long.hashCode(elements[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return Arrays.toString(toArray());
+    }
+
+    private void grow(int minCapacity)
+    {
+        int capacity = Math.max(elements.length + (elements.length >> 1), minCapacity);
+        if (capacity < 0)
+        {
+            capacity = Integer.MAX_VALUE - 8;
+        }
+        elements = Arrays.copyOf(elements, capacity);
+    }
+
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("index [" + index + "] size [" + size + "]");
+        }
+    }
+
+    /**
+     * Covers elements[from, to). trySplit() gives away the first half.
+     */
+    static final class LongArraySpliterator implements Spliterator.OfLong
+    {
+        private final long[] array;
+        private int from;
+        private final int to;
+
+        LongArraySpliterator(long[] array, int from, int to)
+        {
+            this.array = array;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public OfLong trySplit()
+        {
+            int mid = (from + to) >>> 1;
+            if (mid <= from)
+            {
+                return null;
+            }
+            LongArraySpliterator prefix = new LongArraySpliterator(array, from, mid);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action)
+        {
+            if (from < to)
+            {
+                action.accept(array[from++]);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action)
+        {
+            long[] a = array;
+            int i = from, end = to;
+            from = end;
+            for (; i < end; i++)
+            {
+                action.accept(a[i]);
+            }
+        }
+
+        @Override
+        public long estimateSize()
+        {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics()
+        {
+            return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED | Spliterator.NONNULL;
+        }
+    }
+}
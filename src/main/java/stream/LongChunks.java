@@ -0,0 +1,99 @@
+
+package stream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Growable primitive long storage made of chunks, for collecting longs
+ * without boxing.
+ *
+ * add() fills the current chunk and starts a new, bigger one when it is full,
+ * so nothing already added is ever copied. append() takes the other chunks
+ * over as they are, and seals a partly filled current chunk with its length
+ * instead of trimming it. toArray() copies everything once into one long[].
+ *
+ * @author aus
+ */
+final class LongChunks
+{
+    private static final int FIRST_CHUNK = 64;
+    private static final int MAX_CHUNK = 1 << 20;
+
+    private final List<long[]> full = new ArrayList<>();
+    // how much of each chunk in full is used, only less than its length when sealed by append().
+    private int[] lengths = new int[8];
+    private long[] current = new long[FIRST_CHUNK];
+    private int used;
+    private long size;
+
+    void add(long value)
+    {
+        if (used == current.length)
+        {
+            seal();
+            current = new long[Math.min(current.length * 2, MAX_CHUNK)];
+            used = 0;
+        }
+        current[used++] = value;
+        size++;
+    }
+
+    LongChunks append(LongChunks other)
+    {
+        if (other.size == 0)
+        {
+            return this;
+        }
+        if (used > 0)
+        {
+            seal();
+        }
+        for (int i = 0; i < other.full.size(); i++)
+        {
+            seal(other.full.get(i), other.lengths[i]);
+        }
+        current = other.current;
+        used = other.used;
+        size += other.size;
+        return this;
+    }
+
+    private void seal()
+    {
+        seal(current, used);
+    }
+
+    private void seal(long[] chunk, int length)
+    {
+        if (full.size() == lengths.length)
+        {
+            lengths = Arrays.copyOf(lengths, lengths.length * 2);
+        }
+        lengths[full.size()] = length;
+        full.add(chunk);
+    }
+
+    long size()
+    {
+        return size;
+    }
+
+    long[] toArray()
+    {
+        if (size > Integer.MAX_VALUE - 8)
+        {
+            throw new IllegalStateException("Too many values for one long[] : " + size);
+        }
+        long[] array = new long[(int) size];
+        int offset = 0;
+        for (int i = 0; i < full.size(); i++)
+        {
+            System.arraycopy(full.get(i), 0, array, offset, lengths[i]);
+            offset += lengths[i];
+        }
+        System.arraycopy(current, 0, array, offset, used);
+        return array;
+    }
+}
@@ -0,0 +1,176 @@
+
+package stream;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import model.Gender;
+import model.Name;
+
+/**
+ * Names read straight from a memory mapped file.
+ *
+ * <pre>
+ * record : byte  gender     - 'M', 'F', or 0 for null
+ *          text  first name - 1 + firstNameWidth bytes
+ *          text  last name  - 1 + lastNameWidth bytes
+ * </pre>
+ *
+ * stream() decodes a Name only when the stream asks for it, so a file much
+ * bigger than the heap can be filtered and counted. countGender() does not
+ * decode the names at all.
+ *
+ * write() and fromCsv() make the file. The CSV has one name per line :
+ * first,last,gender.
+ *
+ * @author aus
+ */
+public final class MappedNames extends MappedRecords
+{
+    static final int MAGIC = 0x4e414d45; // NAME
+
+    public static final int DEFAULT_WIDTH = 32;
+
+    private MappedNames(Path path) throws IOException
+    {
+        super(path, MAGIC);
+    }
+
+    public static MappedNames open(Path path) throws IOException
+    {
+        return new MappedNames(path);
+    }
+
+    public Name get(long index)
+    {
+        checkIndex(index);
+        return decode(segment(index), offset(index), new byte[Math.max(width(), width2())]);
+    }
+
+    public Stream<Name> stream()
+    {
+        return StreamSupport.stream(new RecordSpliterator<>(this::decode, 0, size()), false);
+    }
+
+    public Stream<Name> parallelStream()
+    {
+        return stream().parallel();
+    }
+
+    /**
+     * The number of names of the gender, reading one byte per record.
+     */
+    public long countGender(Gender gender)
+    {
+        byte code = code(gender);
+        Stream<Boolean> matches =
+                StreamSupport.stream(new RecordSpliterator<>((segment, offset, scratch) -> segment.get(offset) == code,
+                                                             0, size()), true);
+        return matches.filter(Boolean::booleanValue).count();
+    }
+
+    private Name decode(ByteBuffer segment, int offset, byte[] scratch)
+    {
+        Gender gender = gender(segment.get(offset));
+        String firstName = getText(segment, offset + 1, scratch);
+        String lastName = getText(segment, offset + 2 + width(), scratch);
+        return new Name(firstName, lastName, gender);
+    }
+
+    public static long write(Path path, Iterable<Name> names) throws IOException
+    {
+        return write(path, names, DEFAULT_WIDTH, DEFAULT_WIDTH);
+    }
+
+    /**
+     * @return the number of names written.
+     * @throws IllegalArgumentException when a name is longer than its width
+     *                                  in UTF-8.
+     */
+    public static long write(Path path, Iterable<Name> names, int firstNameWidth, int lastNameWidth) throws IOException
+    {
+        checkWidth(firstNameWidth);
+        checkWidth(lastNameWidth);
+        long count = 0;
+        try (Writer writer = writer(path, firstNameWidth, lastNameWidth))
+        {
+            for (Name name : names)
+            {
+                put(writer.next(), name, firstNameWidth, lastNameWidth);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static long fromCsv(Path csv, Path path) throws IOException
+    {
+        return fromCsv(csv, path, DEFAULT_WIDTH, DEFAULT_WIDTH);
+    }
+
+    /**
+     * Converts first,last,gender lines to the binary file, one line at a
+     * time. Blank lines are skipped.
+     */
+    public static long fromCsv(Path csv, Path path, int firstNameWidth, int lastNameWidth) throws IOException
+    {
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8))
+        {
+            Iterable<Name> names =
+                    () -> reader.lines().filter(line -> !line.trim().isEmpty()).map(MappedNames::parse).iterator();
+            return write(path, names, firstNameWidth, lastNameWidth);
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    static Name parse(String line)
+    {
+        String[] fields = line.split(",", -1);
+        if (fields.length != 3)
+        {
+            throw new IllegalArgumentException("Expected first,last,gender : " + line);
+        }
+        String gender = fields[2].trim();
+        return new Name(fields[0], fields[1], gender.isEmpty() ? null : Gender.valueOf(gender));
+    }
+
+    private static Writer writer(Path path, int firstNameWidth, int lastNameWidth) throws IOException
+    {
+        return new Writer(path, MAGIC, 3 + firstNameWidth + lastNameWidth, firstNameWidth, lastNameWidth);
+    }
+
+    private static void put(ByteBuffer buffer, Name name, int firstNameWidth, int lastNameWidth)
+    {
+        buffer.put(code(name.getGender()));
+        putText(buffer, name.getFirstName(), firstNameWidth);
+        putText(buffer, name.getLastName(), lastNameWidth);
+    }
+
+    private static byte code(Gender gender)
+    {
+        return gender == null ? 0 : (byte) gender.name().charAt(0);
+    }
+
+    private static Gender gender(byte code)
+    {
+        switch (code)
+        {
+        case 'M':
+            return Gender.M;
+        case 'F':
+            return Gender.F;
+        default:
+            return null;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+
+package stream;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.DoubleConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Product prices read straight from a memory mapped file.
+ *
+ * <pre>
+ * record : double price
+ *          text   product - 1 + productWidth bytes
+ * </pre>
+ *
+ * prices() is a DoubleStream which reads the 8 bytes of each price and never
+ * decodes the product. entries() gives product and price pairs.
+ *
+ * write() and fromCsv() make the file. The CSV has one price per line :
+ * product,price.
+ *
+ * @author aus
+ */
+public final class MappedPrices extends MappedRecords
+{
+    static final int MAGIC = 0x50524345; // PRCE
+
+    public static final int DEFAULT_WIDTH = 32;
+
+    private MappedPrices(Path path) throws IOException
+    {
+        super(path, MAGIC);
+    }
+
+    public static MappedPrices open(Path path) throws IOException
+    {
+        return new MappedPrices(path);
+    }
+
+    public double getPrice(long index)
+    {
+        checkIndex(index);
+        return segment(index).getDouble(offset(index));
+    }
+
+    public String getProduct(long index)
+    {
+        checkIndex(index);
+        return getText(segment(index), offset(index) + Double.BYTES, new byte[width()]);
+    }
+
+    public DoubleStream prices()
+    {
+        return StreamSupport.doubleStream(new PriceSpliterator(0, size()), false);
+    }
+
+    public Stream<Map.Entry<String, Double>> entries()
+    {
+        return StreamSupport.stream(new RecordSpliterator<>(MappedPrices::decode, 0, size()), false);
+    }
+
+    private static Map.Entry<String, Double> decode(ByteBuffer segment, int offset, byte[] scratch)
+    {
+        return new AbstractMap.SimpleImmutableEntry<>(getText(segment, offset + Double.BYTES, scratch),
+                                                      segment.getDouble(offset));
+    }
+
+    public static long write(Path path, Iterable<? extends Map.Entry<String, Double>> prices) throws IOException
+    {
+        return write(path, prices, DEFAULT_WIDTH);
+    }
+
+    /**
+     * @return the number of prices written.
+     */
+    public static long write(Path path, Iterable<? extends Map.Entry<String, Double>> prices, int productWidth)
+            throws IOException
+    {
+        checkWidth(productWidth);
+        long count = 0;
+        try (Writer writer = new Writer(path, MAGIC, Double.BYTES + 1 + productWidth, productWidth, 0))
+        {
+            for (Map.Entry<String, Double> price : prices)
+            {
+                ByteBuffer buffer = writer.next();
+                buffer.putDouble(price.getValue());
+                putText(buffer, price.getKey(), productWidth);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static long fromCsv(Path csv, Path path) throws IOException
+    {
+        return fromCsv(csv, path, DEFAULT_WIDTH);
+    }
+
+    /**
+     * Converts product,price lines to the binary file, one line at a time.
+     * Blank lines are skipped.
+     */
+    public static long fromCsv(Path csv, Path path, int productWidth) throws IOException
+    {
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8))
+        {
+            Iterable<Map.Entry<String, Double>> prices =
+                    () -> reader.lines().filter(line -> !line.trim().isEmpty()).map(MappedPrices::parse).iterator();
+            return write(path, prices, productWidth);
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    static Map.Entry<String, Double> parse(String line)
+    {
+        int comma = line.lastIndexOf(',');
+        if (comma < 0)
+        {
+            throw new IllegalArgumentException("Expected product,price : " + line);
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(line.substring(0, comma),
+                                                      Double.valueOf(line.substring(comma + 1).trim()));
+    }
+
+    /**
+     * Reads the prices of the records [from, to).
+     */
+    private final class PriceSpliterator implements Spliterator.OfDouble
+    {
+        private long from;
+        private final long to;
+
+        private PriceSpliterator(long from, long to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public OfDouble trySplit()
+        {
+            long mid = splitPoint(from, to);
+            if (mid <= from)
+            {
+                return null;
+            }
+            PriceSpliterator prefix = new PriceSpliterator(from, mid);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action)
+        {
+            if (from < to)
+            {
+                action.accept(segment(from).getDouble(offset(from)));
+                from++;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action)
+        {
+            long i = from, end = to;
+            from = end;
+            int recordBytes = recordBytes();
+            while (i < end)
+            {
+                ByteBuffer segment = segment(i);
+                long last = segmentEnd(i, end);
+                for (int offset = offset(i); i < last; i++, offset += recordBytes)
+                {
+                    action.accept(segment.getDouble(offset));
+                }
+            }
+        }
+
+        @Override
+        public long estimateSize()
+        {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics()
+        {
+            return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED | Spliterator.NONNULL
+                    | Spliterator.IMMUTABLE;
+        }
+    }
+}
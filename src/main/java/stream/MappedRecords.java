@@ -0,0 +1,394 @@
+
+package stream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A file of fixed size records, mapped into memory, for MappedNames and
+ * MappedPrices.
+ *
+ * <pre>
+ * header, 32 bytes, little endian :
+ *   int  magic
+ *   int  version
+ *   int  recordBytes
+ *   int  width        - bytes kept for the first text field
+ *   int  width2       - bytes kept for the second text field, or 0
+ *   int  unused
+ *   long count        - number of records
+ * then count records of recordBytes each.
+ * </pre>
+ *
+ * As every record has the same size, record i is found without reading the
+ * ones before it, which is what lets a stream split the file anywhere.
+ *
+ * One MappedByteBuffer cannot be bigger than 2 GB, so the file is mapped in
+ * segments of up to 1 GB, each holding whole records. Nothing is copied onto
+ * the heap : the OS pages the file in as it is read.
+ *
+ * @author aus
+ */
+abstract class MappedRecords implements AutoCloseable
+{
+    static final int HEADER_BYTES = 32;
+    static final int VERSION = 1;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private static final int SEGMENT_BYTES = 1 << 30;
+    private static final int NULL_TEXT = 0xFF;
+
+    private final int recordBytes;
+    private final int width;
+    private final int width2;
+    private final long count;
+    private final long recordsPerSegment;
+    private final MappedByteBuffer[] segments;
+    private volatile boolean closed;
+
+    MappedRecords(Path path, int magic) throws IOException
+    {
+        super();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ORDER);
+            while (header.hasRemaining() && channel.read(header) >= 0)
+            {
+                // read the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt(0) != magic)
+            {
+                throw new IOException(path + " is not a " + getClass().getSimpleName() + " file");
+            }
+            if (header.getInt(4) != VERSION)
+            {
+                throw new IOException(path + " has version " + header.getInt(4) + ", expected " + VERSION);
+            }
+            this.recordBytes = header.getInt(8);
+            this.width = header.getInt(12);
+            this.width2 = header.getInt(16);
+            this.count = header.getLong(24);
+            if (recordBytes <= 0 || recordBytes > SEGMENT_BYTES || width < 0 || width2 < 0
+                    || (long) width + width2 > recordBytes)
+            {
+                throw new IOException(path + " has records of " + recordBytes + " bytes, widths " + width + " and "
+                        + width2);
+            }
+            // compared by division, so a corrupt count cannot overflow past the check.
+            if (count < 0 || count > (channel.size() - HEADER_BYTES) / recordBytes)
+            {
+                throw new IOException(path + " is too short for " + count + " records");
+            }
+
+            this.recordsPerSegment = SEGMENT_BYTES / recordBytes;
+            int segmentCount = (int) ((count + recordsPerSegment - 1) / recordsPerSegment);
+            this.segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++)
+            {
+                long first = i * recordsPerSegment;
+                long records = Math.min(recordsPerSegment, count - first);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                          HEADER_BYTES + first * recordBytes,
+                                          records * recordBytes);
+                segments[i].order(ORDER);
+            }
+        }
+    }
+
+    static ByteBuffer header(int magic, int recordBytes, int width, int width2, long count)
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ORDER);
+        header.putInt(magic).putInt(VERSION).putInt(recordBytes).putInt(width).putInt(width2).putInt(0).putLong(count);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * A text field takes 1 + width bytes : the length of the UTF-8 bytes
+     * ( 0xFF for null ), then the bytes, then zeros up to width.
+     */
+    static void putText(ByteBuffer buffer, String text, int width)
+    {
+        if (text == null)
+        {
+            buffer.put((byte) NULL_TEXT);
+            buffer.position(buffer.position() + width);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > width)
+        {
+            throw new IllegalArgumentException("[" + text + "] is longer than " + width + " bytes");
+        }
+        buffer.put((byte) bytes.length);
+        buffer.put(bytes);
+        buffer.position(buffer.position() + width - bytes.length);
+    }
+
+    static String getText(ByteBuffer segment, int offset, byte[] scratch)
+    {
+        int length = segment.get(offset) & 0xFF;
+        if (length == NULL_TEXT)
+        {
+            return null;
+        }
+        for (int i = 0; i < length; i++)
+        {
+            scratch[i] = segment.get(offset + 1 + i);
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    static void checkWidth(int width)
+    {
+        if (width < 1 || width >= NULL_TEXT)
+        {
+            throw new IllegalArgumentException("width [" + width + "] must be 1 to " + (NULL_TEXT - 1));
+        }
+    }
+
+    public long size()
+    {
+        return count;
+    }
+
+    int recordBytes()
+    {
+        return recordBytes;
+    }
+
+    int width()
+    {
+        return width;
+    }
+
+    int width2()
+    {
+        return width2;
+    }
+
+    ByteBuffer segment(long index)
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("The file is closed");
+        }
+        return segments[(int) (index / recordsPerSegment)];
+    }
+
+    int offset(long index)
+    {
+        return (int) (index % recordsPerSegment) * recordBytes;
+    }
+
+    void checkIndex(long index)
+    {
+        if (index < 0 || index >= count)
+        {
+            throw new IndexOutOfBoundsException("index [" + index + "] size [" + count + "]");
+        }
+    }
+
+    /**
+     * Where a spliterator over [from, to) should split : in the middle,
+     * moved back to a segment boundary while the range covers more than one
+     * segment. Returns from when it should not split.
+     */
+    long splitPoint(long from, long to)
+    {
+        long mid = (from + to) >>> 1;
+        if (to - from > recordsPerSegment)
+        {
+            mid -= mid % recordsPerSegment;
+        }
+        return mid;
+    }
+
+    /**
+     * The last index + 1 in the same segment as index, up to to.
+     */
+    long segmentEnd(long index, long to)
+    {
+        return Math.min(to, (index / recordsPerSegment + 1) * recordsPerSegment);
+    }
+
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * Unmaps the file. Streams must not be running on it.
+     */
+    @Override
+    public void close()
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+        for (MappedByteBuffer segment : segments)
+        {
+            DirectChunks.free(segment);
+        }
+    }
+
+    /**
+     * Writes records of recordBytes through a 1 MB buffer, and the header with
+     * the count at close().
+     */
+    static final class Writer implements Closeable
+    {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ORDER);
+        private final int magic, recordBytes, width, width2;
+        private long count;
+
+        Writer(Path path, int magic, int recordBytes, int width, int width2) throws IOException
+        {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                            StandardOpenOption.TRUNCATE_EXISTING);
+            this.magic = magic;
+            this.recordBytes = recordBytes;
+            this.width = width;
+            this.width2 = width2;
+            channel.position(HEADER_BYTES);
+        }
+
+        /**
+         * The buffer to put the next record in, with recordBytes free. The
+         * caller must put exactly recordBytes.
+         */
+        ByteBuffer next() throws IOException
+        {
+            if (buffer.remaining() < recordBytes)
+            {
+                flush();
+            }
+            count++;
+            return buffer;
+        }
+
+        private void flush() throws IOException
+        {
+            buffer.flip();
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                flush();
+                ByteBuffer header = header(magic, recordBytes, width, width2, count);
+                long position = 0;
+                while (header.hasRemaining())
+                {
+                    position += channel.write(header, position);
+                }
+            }
+            finally
+            {
+                channel.close();
+                DirectChunks.free(buffer);
+            }
+        }
+    }
+
+    interface Decoder<T>
+    {
+        /**
+         * @param scratch a buffer of at least the widest field, owned by the
+         *                calling spliterator.
+         */
+        T decode(ByteBuffer segment, int offset, byte[] scratch);
+    }
+
+    /**
+     * Decodes the records [from, to) one at a time, as they are consumed.
+     */
+    final class RecordSpliterator<T> implements Spliterator<T>
+    {
+        private final Decoder<T> decoder;
+        private final byte[] scratch = new byte[Math.max(width, width2)];
+        private long from;
+        private final long to;
+
+        RecordSpliterator(Decoder<T> decoder, long from, long to)
+        {
+            this.decoder = decoder;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Spliterator<T> trySplit()
+        {
+            long mid = splitPoint(from, to);
+            if (mid <= from)
+            {
+                return null;
+            }
+            RecordSpliterator<T> prefix = new RecordSpliterator<>(decoder, from, mid);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action)
+        {
+            if (from < to)
+            {
+                action.accept(decoder.decode(segment(from), offset(from), scratch));
+                from++;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action)
+        {
+            long i = from, end = to;
+            from = end;
+            while (i < end)
+            {
+                ByteBuffer segment = segment(i);
+                long last = segmentEnd(i, end);
+                for (int offset = offset(i); i < last; i++, offset += recordBytes)
+                {
+                    action.accept(decoder.decode(segment, offset, scratch));
+                }
+            }
+        }
+
+        @Override
+        public long estimateSize()
+        {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics()
+        {
+            return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED | Spliterator.NONNULL
+                    | Spliterator.IMMUTABLE;
+        }
+    }
+}
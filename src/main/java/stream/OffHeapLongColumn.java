@@ -0,0 +1,252 @@
+
+package stream;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A column of longs kept outside the heap, in direct ByteBuffers.
+ *
+ * The values are stored in chunks of chunkSize longs, so the column can hold
+ * more than the 2^31 values one buffer can, and growing it never copies what
+ * is already there. The heap only holds the small buffer objects, so the GC
+ * has nothing to scan however big the column is.
+ *
+ * stream() and parallelStream() are LongStreams over a spliterator which is
+ * SIZED, SUBSIZED and ORDERED, and splits at chunk boundaries while the range
+ * is bigger than a chunk.
+ *
+ * close() frees the memory. Reading or adding to the column after close()
+ * throws IllegalStateException. Do not close or add to it while a stream over it is
+ * running. Not thread safe for writes.
+ *
+ * @author aus
+ */
+public final class OffHeapLongColumn implements AutoCloseable
+{
+    /**
+     * 1M longs, 8 MB per chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final DirectChunks chunks;
+    private final int shift;
+    private final int mask;
+    private LongBuffer[] views = new LongBuffer[8];
+    private long size;
+
+    public OffHeapLongColumn()
+    {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize number of longs per chunk, a power of two up to 2^27.
+     */
+    public OffHeapLongColumn(int chunkSize)
+    {
+        super();
+        if (chunkSize <= 0 || chunkSize > (1 << 27) || Integer.bitCount(chunkSize) != 1)
+        {
+            throw new IllegalArgumentException("chunkSize [" + chunkSize + "]");
+        }
+        this.chunks = new DirectChunks(chunkSize * Long.BYTES);
+        this.shift = Integer.numberOfTrailingZeros(chunkSize);
+        this.mask = chunkSize - 1;
+    }
+
+    public void add(long value)
+    {
+        chunks.checkOpen();
+        int offset = (int) size & mask;
+        if (offset == 0)
+        {
+            addChunk();
+        }
+        views[(int) (size >>> shift)].put(offset, value);
+        size++;
+    }
+
+    public void addAll(long[] values)
+    {
+        chunks.checkOpen();
+        int from = 0;
+        while (from < values.length)
+        {
+            int offset = (int) size & mask;
+            if (offset == 0)
+            {
+                addChunk();
+            }
+            int count = Math.min(values.length - from, mask + 1 - offset);
+            LongBuffer view = views[(int) (size >>> shift)].duplicate();
+            view.position(offset);
+            view.put(values, from, count);
+            from += count;
+            size += count;
+        }
+    }
+
+    /**
+     * Adds the values in the order of the stream, one at a time, without
+     * collecting them on the heap first.
+     */
+    public void addAll(LongStream values)
+    {
+        values.sequential().forEachOrdered(this::add);
+    }
+
+    public long get(long index)
+    {
+        checkIndex(index);
+        return views[(int) (index >>> shift)].get((int) index & mask);
+    }
+
+    public void set(long index, long value)
+    {
+        checkIndex(index);
+        views[(int) (index >>> shift)].put((int) index & mask, value);
+    }
+
+    public long size()
+    {
+        return size;
+    }
+
+    /**
+     * Bytes allocated outside the heap, a whole number of chunks.
+     */
+    public long getOffHeapBytes()
+    {
+        return chunks.bytes();
+    }
+
+    public boolean isClosed()
+    {
+        return chunks.isClosed();
+    }
+
+    public Spliterator.OfLong spliterator()
+    {
+        chunks.checkOpen();
+        return new ColumnSpliterator(0, size);
+    }
+
+    public LongStream stream()
+    {
+        return StreamSupport.longStream(spliterator(), false);
+    }
+
+    public LongStream parallelStream()
+    {
+        return StreamSupport.longStream(spliterator(), true);
+    }
+
+    @Override
+    public void close()
+    {
+        chunks.close();
+        views = new LongBuffer[0];
+    }
+
+    private void addChunk()
+    {
+        int index = chunks.count();
+        LongBuffer view = chunks.add().asLongBuffer();
+        if (index == views.length)
+        {
+            views = Arrays.copyOf(views, index * 2);
+        }
+        views[index] = view;
+    }
+
+    private void checkIndex(long index)
+    {
+        chunks.checkOpen();
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("index [" + index + "] size [" + size + "]");
+        }
+    }
+
+    /**
+     * Covers the indexes [from, to). trySplit() gives away the first half.
+     */
+    private final class ColumnSpliterator implements Spliterator.OfLong
+    {
+        private long from;
+        private final long to;
+
+        private ColumnSpliterator(long from, long to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public OfLong trySplit()
+        {
+            long mid = (from + to) >>> 1;
+            if (to - from > mask + 1)
+            {
+                // whole chunks on each side.
+                mid &= ~(long) mask;
+            }
+            if (mid <= from)
+            {
+                return null;
+            }
+            ColumnSpliterator prefix = new ColumnSpliterator(from, mid);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action)
+        {
+            if (from < to)
+            {
+                chunks.checkOpen();
+                action.accept(views[(int) (from >>> shift)].get((int) from & mask));
+                from++;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action)
+        {
+            long i = from, end = to;
+            from = end;
+            while (i < end)
+            {
+                chunks.checkOpen();
+                LongBuffer view = views[(int) (i >>> shift)];
+                int offset = (int) i & mask;
+                int last = (int) Math.min(mask + 1, offset + (end - i));
+                for (int j = offset; j < last; j++)
+                {
+                    action.accept(view.get(j));
+                }
+                i += last - offset;
+            }
+        }
+
+        @Override
+        public long estimateSize()
+        {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics()
+        {
+            return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED | Spliterator.NONNULL;
+        }
+    }
+}
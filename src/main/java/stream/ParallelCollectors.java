@@ -0,0 +1,209 @@
+
+package stream;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.stream.LongStream;
+
+/**
+ * Collectors which do well in parallelStream().
+ *
+ * Collectors.groupingBy() gives every fork join leaf its own HashMap of
+ * ArrayLists, then merges them by copying one list into the other, again and
+ * again up the tree. That is why parallel can lose to sequential.
+ *
+ * <pre>
+ * partitioningBy()         - each leaf fills its own lists, and joining two
+ *                            leaves only links their lists. Keeps the order.
+ * groupingBy()             - the same, for any key.
+ * groupingByConcurrent()   - one ConcurrentHashMap for all the threads. Each
+ *                            key has striped buckets, so threads adding to
+ *                            the same key rarely wait. Does not keep the order.
+ * partitioningToLongArrays - longs kept unboxed in chunks, and copied once
+ *                            into a long[] at the end.
+ * </pre>
+ *
+ * @author aus
+ */
+public final class ParallelCollectors
+{
+    private ParallelCollectors()
+    {
+    }
+
+    /**
+     * Same result as Collectors.partitioningBy() : both keys are always in
+     * the map. The lists cannot be changed.
+     */
+    public static <T> Collector<T, ?, Map<Boolean, List<T>>> partitioningBy(Predicate<? super T> predicate)
+    {
+        return Collector.of(() -> new Partition<T>(),
+                            (partition, t) -> partition.list(predicate.test(t)).last().add(t),
+                            (left, right) -> {
+                                left.falses.append(right.falses);
+                                left.trues.append(right.trues);
+                                return left;
+                            },
+                            partition -> {
+                                Map<Boolean, List<T>> map = new HashMap<>(4);
+                                map.put(Boolean.FALSE, partition.falses);
+                                map.put(Boolean.TRUE, partition.trues);
+                                return map;
+                            });
+    }
+
+    /**
+     * Same result as Collectors.groupingBy(). The lists cannot be changed.
+     */
+    public static <T, K> Collector<T, ?, Map<K, List<T>>> groupingBy(Function<? super T, ? extends K> classifier)
+    {
+        return Collector.of(() -> new HashMap<K, ChunkedList<T>>(),
+                            (map, t) -> map.computeIfAbsent(classifier.apply(t), k -> new ChunkedList<>()).last().add(t),
+                            (left, right) -> {
+                                right.forEach((k, list) -> left.merge(k, list, ChunkedList::append));
+                                return left;
+                            },
+                            map -> new HashMap<K, List<T>>(map));
+    }
+
+    /**
+     * Like Collectors.groupingByConcurrent(), but threads adding to the same
+     * key mostly add to different stripes. The order of each list is not
+     * kept. The lists cannot be changed.
+     */
+    public static <T, K> Collector<T, ?, Map<K, List<T>>> groupingByConcurrent(Function<? super T, ? extends K> classifier)
+    {
+        return Collector.of(() -> new ConcurrentHashMap<K, StripedBucket<T>>(),
+                            (map, t) -> bucket(map, classifier.apply(t)).add(t),
+                            (left, right) -> {
+                                // only used when the stream is not parallel or not unordered.
+                                right.forEach((k, bucket) -> bucket(left, k).addAll(bucket));
+                                return left;
+                            },
+                            map -> {
+                                Map<K, List<T>> result = new HashMap<>(map.size() * 2);
+                                map.forEach((k, bucket) -> result.put(k, bucket.toList()));
+                                return result;
+                            },
+                            Collector.Characteristics.CONCURRENT,
+                            Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Like partitioningBy(), but the values stay unboxed from the first
+     * element to the long[].
+     */
+    public static Collector<Long, ?, Map<Boolean, long[]>> partitioningToLongArrays(LongPredicate predicate)
+    {
+        return Collector.of(() -> new LongChunks[] { new LongChunks(), new LongChunks() },
+                            (chunks, l) -> {
+                                long value = l;
+                                chunks[predicate.test(value) ? 1 : 0].add(value);
+                            },
+                            ParallelCollectors::append,
+                            ParallelCollectors::toLongArrays);
+    }
+
+    /**
+     * partitioningToLongArrays() for a LongStream, which never boxes at all.
+     */
+    public static Map<Boolean, long[]> partition(LongStream stream, LongPredicate predicate)
+    {
+        LongChunks[] chunks =
+                stream.collect(() -> new LongChunks[] { new LongChunks(), new LongChunks() },
+                               (c, value) -> c[predicate.test(value) ? 1 : 0].add(value),
+                               ParallelCollectors::append);
+        return toLongArrays(chunks);
+    }
+
+    private static LongChunks[] append(LongChunks[] left, LongChunks[] right)
+    {
+        left[0].append(right[0]);
+        left[1].append(right[1]);
+        return left;
+    }
+
+    private static Map<Boolean, long[]> toLongArrays(LongChunks[] chunks)
+    {
+        Map<Boolean, long[]> map = new HashMap<>(4);
+        map.put(Boolean.FALSE, chunks[0].toArray());
+        map.put(Boolean.TRUE, chunks[1].toArray());
+        return map;
+    }
+
+    private static <K, T> StripedBucket<T> bucket(ConcurrentMap<K, StripedBucket<T>> map, K key)
+    {
+        // get() first, computeIfAbsent() locks the bin even when the key is there.
+        StripedBucket<T> bucket = map.get(key);
+        return bucket != null ? bucket : map.computeIfAbsent(key, k -> new StripedBucket<>());
+    }
+
+    private static final class Partition<T>
+    {
+        private final ChunkedList<T> falses = new ChunkedList<>();
+        private final ChunkedList<T> trues = new ChunkedList<>();
+
+        private ChunkedList<T> list(boolean key)
+        {
+            return key ? trues : falses;
+        }
+    }
+
+    /**
+     * One list per stripe. A thread always adds to the stripe of its id, so
+     * two threads only wait for each other when their ids share a stripe.
+     */
+    private static final class StripedBucket<T>
+    {
+        private static final int STRIPES =
+                Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+
+        private final List<List<T>> stripes = new ArrayList<>(STRIPES);
+
+        private StripedBucket()
+        {
+            for (int i = 0; i < STRIPES; i++)
+            {
+                stripes.add(new ArrayList<>());
+            }
+        }
+
+        private void add(T t)
+        {
+            List<T> stripe = stripes.get((int) Thread.currentThread().getId() & (STRIPES - 1));
+            synchronized (stripe)
+            {
+                stripe.add(t);
+            }
+        }
+
+        private void addAll(StripedBucket<T> other)
+        {
+            for (List<T> stripe : other.stripes)
+            {
+                synchronized (stripe)
+                {
+                    for (T t : stripe)
+                    {
+                        add(t);
+                    }
+                }
+            }
+        }
+
+        private List<T> toList()
+        {
+            List<List<T>> chunks = new ArrayList<>(stripes);
+            chunks.removeIf(List::isEmpty);
+            return new ChunkedList<>(chunks);
+        }
+    }
+}
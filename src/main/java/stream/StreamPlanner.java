@@ -0,0 +1,411 @@
+
+package stream;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Picks stream() or parallelStream() for the caller, from a cost model,
+ * instead of guessing.
+ *
+ * <pre>
+ * sequential = n * work
+ * parallel   = fork overhead + n * work / parallelism + split + merge
+ *
+ * work     - nanos per element for the kind of terminal operation.
+ * split    - 0 when the source splits evenly ( e.g. ArrayList ).
+ *            Otherwise the elements are walked one by one to cut batches
+ *            ( e.g. LinkedList ), so n * traversal.
+ * merge    - 0 for a REDUCE. A COLLECT or GROUP copies lists when joining
+ *            the leaves : n / 2 copies per level, log2(4 * parallelism)
+ *            levels for an even split, one level per batch for an uneven
+ *            one, as each batch is joined onto everything collected so far.
+ * </pre>
+ *
+ * Parallel is only picked when it is expected to be quicker by more than the
+ * margin. A source with no known size always runs sequentially.
+ *
+ * calibrated() measures the costs once, with a small probe of the
+ * ParallelStreamTest cases, the first time it is called. Every decision is
+ * kept, with its numbers, so getDecisions() shows why it was made.
+ *
+ * @author aus
+ */
+public final class StreamPlanner
+{
+    public enum Terminal
+    {
+        /**
+         * sum(), count(), min(), reduce(), anyMatch(), forEach() ...
+         */
+        REDUCE,
+        /**
+         * collect(Collectors.toList()), toArray() ...
+         */
+        COLLECT,
+        /**
+         * collect(Collectors.groupingBy()), partitioningBy() ...
+         */
+        GROUP
+    }
+
+    /**
+     * Parallel must be expected to save at least this much.
+     */
+    public static final double DEFAULT_MARGIN = 0.2;
+
+    private static final int MAX_DECISIONS = 256;
+
+    private static volatile StreamPlanner calibrated;
+
+    private final CostModel costModel;
+    private final double margin;
+    private final Deque<Decision> decisions = new ArrayDeque<>();
+
+    public StreamPlanner(CostModel costModel_, double margin_)
+    {
+        super();
+        this.costModel = costModel_;
+        this.margin = margin_;
+    }
+
+    /**
+     * The shared planner, with costs measured on this machine.
+     */
+    public static StreamPlanner calibrated()
+    {
+        StreamPlanner planner = calibrated;
+        if (planner == null)
+        {
+            synchronized (StreamPlanner.class)
+            {
+                planner = calibrated;
+                if (planner == null)
+                {
+                    planner = new StreamPlanner(CostModel.probe(), DEFAULT_MARGIN);
+                    calibrated = planner;
+                }
+            }
+        }
+        return planner;
+    }
+
+    public CostModel getCostModel()
+    {
+        return costModel;
+    }
+
+    /**
+     * A List which is not RandomAccess, like LinkedList, reports SUBSIZED as
+     * its batches know their size, but cutting them walks the list, so it is
+     * planned as an uneven split.
+     */
+    public <T> Stream<T> stream(Collection<T> source, Terminal terminal)
+    {
+        Spliterator<T> spliterator = source.spliterator();
+        int characteristics = spliterator.characteristics();
+        boolean evenSplit = (characteristics & Spliterator.SUBSIZED) != 0
+                && !(source instanceof List && !(source instanceof RandomAccess));
+        Decision decision = decide(characteristics, spliterator.estimateSize(), terminal, evenSplit);
+        return StreamSupport.stream(spliterator, decision.isParallel());
+    }
+
+    public LongStream stream(LongArrayList source, Terminal terminal)
+    {
+        Spliterator.OfLong spliterator = source.spliterator();
+        return StreamSupport.longStream(spliterator, decide(spliterator, terminal).isParallel());
+    }
+
+    public Decision decide(Spliterator<?> spliterator, Terminal terminal)
+    {
+        return decide(spliterator.characteristics(), spliterator.estimateSize(), terminal);
+    }
+
+    public Decision decide(int characteristics, long size, Terminal terminal)
+    {
+        return decide(characteristics, size, terminal, (characteristics & Spliterator.SUBSIZED) != 0);
+    }
+
+    private Decision decide(int characteristics, long size, Terminal terminal, boolean evenSplit)
+    {
+        Decision decision;
+        boolean sized = (characteristics & Spliterator.SIZED) != 0 && size != Long.MAX_VALUE;
+        if (!sized)
+        {
+            decision = new Decision(false, characteristics, size, terminal, evenSplit, Double.NaN, Double.NaN,
+                                    "size unknown");
+        }
+        else
+        {
+            double sequential = costModel.sequentialNanos(size, terminal);
+            double parallel = costModel.parallelNanos(size, terminal, evenSplit);
+            boolean quicker = parallel < sequential * (1 - margin);
+            decision = new Decision(quicker, characteristics, size, terminal, evenSplit, sequential, parallel,
+                                    quicker ? "parallel expected quicker" : "parallel not quicker by the margin");
+        }
+        record(decision);
+        return decision;
+    }
+
+    /**
+     * The latest decisions, oldest first.
+     */
+    public List<Decision> getDecisions()
+    {
+        synchronized (decisions)
+        {
+            return new ArrayList<>(decisions);
+        }
+    }
+
+    public Decision getLastDecision()
+    {
+        synchronized (decisions)
+        {
+            return decisions.peekLast();
+        }
+    }
+
+    private void record(Decision decision)
+    {
+        synchronized (decisions)
+        {
+            if (decisions.size() == MAX_DECISIONS)
+            {
+                decisions.removeFirst();
+            }
+            decisions.addLast(decision);
+        }
+    }
+
+    /**
+     * Costs in nanos per element, and the fixed cost of going parallel.
+     */
+    public static final class CostModel
+    {
+        private static final int PROBE_SIZE = 100000;
+        private static final int PROBE_ROUNDS = 10;
+
+        private final double[] workNanos;
+        private final double copyNanos;
+        private final double traversalNanos;
+        private final double forkNanos;
+        private final int parallelism;
+
+        /**
+         * @param workNanos_      nanos per element, by Terminal ordinal.
+         * @param copyNanos_      nanos to copy one element when merging.
+         * @param traversalNanos_ nanos per element to cut batches from a
+         *                        source which is not SUBSIZED.
+         * @param forkNanos_      fixed cost of a parallel stream.
+         */
+        public CostModel(double[] workNanos_, double copyNanos_, double traversalNanos_, double forkNanos_,
+                         int parallelism_)
+        {
+            super();
+            if (workNanos_.length != Terminal.values().length)
+            {
+                throw new IllegalArgumentException("One work cost per Terminal");
+            }
+            this.workNanos = workNanos_.clone();
+            this.copyNanos = copyNanos_;
+            this.traversalNanos = traversalNanos_;
+            this.forkNanos = forkNanos_;
+            this.parallelism = Math.max(1, parallelism_);
+        }
+
+        /**
+         * Measures the costs with the ParallelStreamTest cases on a small
+         * list. Takes the best of a few rounds, so the first, cold, ones do
+         * not count.
+         */
+        public static CostModel probe()
+        {
+            List<Long> arrayList = new ArrayList<>(PROBE_SIZE);
+            for (long i = 0; i < PROBE_SIZE; i++)
+            {
+                arrayList.add(Long.valueOf(i));
+            }
+            List<Long> linkedList = new LinkedList<>(arrayList);
+            List<Long> small = arrayList.subList(0, 64);
+
+            double[] work = new double[Terminal.values().length];
+            work[Terminal.REDUCE.ordinal()] =
+                    perElement(() -> arrayList.stream().mapToLong(l -> l).sum(), PROBE_SIZE);
+            work[Terminal.COLLECT.ordinal()] =
+                    perElement(() -> arrayList.stream().collect(Collectors.toList()).size(), PROBE_SIZE);
+            work[Terminal.GROUP.ordinal()] =
+                    perElement(() -> arrayList.stream().collect(Collectors.groupingBy(l -> l % 2 == 0)).size(),
+                               PROBE_SIZE);
+            double copy = perElement(() -> new ArrayList<>(arrayList).size(), PROBE_SIZE);
+            double traversal = perElement(() -> linkedList.toArray().length, PROBE_SIZE);
+            double fork = best(() -> small.parallelStream().mapToLong(l -> l).sum());
+
+            return new CostModel(work, copy, traversal, fork, ForkJoinPool.getCommonPoolParallelism());
+        }
+
+        public double sequentialNanos(long size, Terminal terminal)
+        {
+            return size * workNanos[terminal.ordinal()];
+        }
+
+        public double parallelNanos(long size, Terminal terminal, boolean evenSplit)
+        {
+            double nanos = forkNanos + size * workNanos[terminal.ordinal()] / parallelism;
+            if (!evenSplit)
+            {
+                nanos += size * traversalNanos;
+            }
+            if (terminal != Terminal.REDUCE)
+            {
+                nanos += size / 2.0 * copyNanos * mergeLevels(size, evenSplit);
+            }
+            return nanos;
+        }
+
+        /**
+         * An uneven source, like LinkedList, is cut into batches of 1024,
+         * 2048, 3072 ... so about sqrt(2n / 1024) of them.
+         */
+        private double mergeLevels(long size, boolean evenSplit)
+        {
+            if (evenSplit)
+            {
+                return Math.max(1, 32 - Integer.numberOfLeadingZeros(4 * parallelism - 1));
+            }
+            return Math.max(1, Math.sqrt(2.0 * size / 1024));
+        }
+
+        public int getParallelism()
+        {
+            return parallelism;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("CostModel [reduce=%.2fns collect=%.2fns group=%.2fns copy=%.2fns traversal=%.2fns fork=%.0fns parallelism=%d]",
+                                 workNanos[0], workNanos[1], workNanos[2], copyNanos, traversalNanos, forkNanos,
+                                 parallelism);
+        }
+
+        private interface Probe
+        {
+            long run();
+        }
+
+        private static double perElement(Probe probe, int size)
+        {
+            return best(probe) / size;
+        }
+
+        private static double best(Probe probe)
+        {
+            long best = Long.MAX_VALUE;
+            long sink = 0;
+            for (int i = 0; i < PROBE_ROUNDS; i++)
+            {
+                long start = System.nanoTime();
+                sink += probe.run();
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            if (sink == Long.MIN_VALUE)
+            {
+                // keeps the results alive, never true.
+                best++;
+            }
+            return best;
+        }
+    }
+
+    /**
+     * One decision and the numbers behind it.
+     */
+    public static final class Decision
+    {
+        private final boolean parallel;
+        private final int characteristics;
+        private final long size;
+        private final Terminal terminal;
+        private final boolean evenSplit;
+        private final double sequentialNanos;
+        private final double parallelNanos;
+        private final String reason;
+
+        private Decision(boolean parallel_, int characteristics_, long size_, Terminal terminal_, boolean evenSplit_,
+                         double sequentialNanos_, double parallelNanos_, String reason_)
+        {
+            super();
+            this.parallel = parallel_;
+            this.characteristics = characteristics_;
+            this.size = size_;
+            this.terminal = terminal_;
+            this.evenSplit = evenSplit_;
+            this.sequentialNanos = sequentialNanos_;
+            this.parallelNanos = parallelNanos_;
+            this.reason = reason_;
+        }
+
+        public boolean isParallel()
+        {
+            return parallel;
+        }
+
+        public int getCharacteristics()
+        {
+            return characteristics;
+        }
+
+        public long getSize()
+        {
+            return size;
+        }
+
+        public Terminal getTerminal()
+        {
+            return terminal;
+        }
+
+        public boolean isEvenSplit()
+        {
+            return evenSplit;
+        }
+
+        /**
+         * NaN when the size is unknown.
+         */
+        public double getSequentialNanos()
+        {
+            return sequentialNanos;
+        }
+
+        public double getParallelNanos()
+        {
+            return parallelNanos;
+        }
+
+        public String getReason()
+        {
+            return reason;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s %s size=%d evenSplit=%b sequential=%.0fns parallel=%.0fns : %s",
+                                 parallel ? "PARALLEL" : "SEQUENTIAL", terminal, size, evenSplit, sequentialNanos,
+                                 parallelNanos, reason);
+        }
+    }
+}
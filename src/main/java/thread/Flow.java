@@ -0,0 +1,41 @@
+package thread;
+
+/**
+ * The reactive-streams interfaces of java.util.concurrent.Flow, which only exists from JDK 9.
+ *
+ * The methods are the same, so moving to JDK 9 is only a change of import.
+ *
+ * @author Sunny
+ */
+public final class Flow {
+
+	private Flow() {
+	}
+
+	@FunctionalInterface
+	public interface Publisher<T> {
+		void subscribe( Subscriber<? super T> subscriber );
+	}
+
+	public interface Subscriber<T> {
+		void onSubscribe( Subscription subscription );
+
+		void onNext( T item );
+
+		void onError( Throwable throwable );
+
+		void onComplete();
+	}
+
+	public interface Subscription {
+		/**
+		 * Ask for n more items. n must be positive.
+		 */
+		void request( long n );
+
+		void cancel();
+	}
+
+	public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+	}
+}
@@ -0,0 +1,111 @@
+package thread;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publish the items of an Iterable, only as many as the subscriber has asked for.
+ *
+ * The iterator is only moved on when there is demand, so a lazy or endless Iterable is never read ahead.
+ * Each subscriber gets its own iterator.
+ *
+ * Every signal goes out from the drain loop, one at a time. A request of 0 or less is kept as an error which the loop
+ * sends instead of the next item, and only if the subscription is not already done.
+ *
+ * @author Sunny
+ */
+public class IterablePublisher<T> implements Flow.Publisher<T> {
+
+	private final Iterable<? extends T> items;
+
+	public IterablePublisher( Iterable<? extends T> items_ ) {
+		super();
+		this.items = items_;
+	}
+
+	@Override
+	public void subscribe( Flow.Subscriber<? super T> subscriber ) {
+		Iterator<? extends T> iterator;
+		try {
+			iterator = items.iterator();
+		} catch (RuntimeException e) {
+			subscriber.onSubscribe(new IteratorSubscription<>(subscriber, null));
+			subscriber.onError(e);
+			return;
+		}
+		subscriber.onSubscribe(new IteratorSubscription<>(subscriber, iterator));
+	}
+
+	private static final class IteratorSubscription<T> implements Flow.Subscription {
+
+		private final Flow.Subscriber<? super T> subscriber;
+		private final Iterator<? extends T> iterator;
+		private final AtomicLong demand = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+		private volatile Throwable error;
+		private volatile boolean done;
+
+		private IteratorSubscription( Flow.Subscriber<? super T> subscriber_, Iterator<? extends T> iterator_ ) {
+			this.subscriber = subscriber_;
+			this.iterator = iterator_;
+			this.done = iterator_ == null;
+		}
+
+		@Override
+		public void request( long n ) {
+			if (n <= 0) {
+				if (error == null) {
+					error = new IllegalArgumentException("request must be positive, was [" + n + "]");
+				}
+			} else {
+				demand.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			done = true;
+		}
+
+		/**
+		 * A request() made from inside onNext() only adds demand. The loop already running sends the items.
+		 */
+		private void drain() {
+			if (wip.getAndIncrement() != 0) {
+				return;
+			}
+			int missed = 1;
+			do {
+				while (!done) {
+					Throwable failure = error;
+					if (failure != null) {
+						done = true;
+						subscriber.onError(failure);
+						return;
+					}
+					if (demand.get() == 0) {
+						break;
+					}
+					T item;
+					try {
+						if (!iterator.hasNext()) {
+							done = true;
+							subscriber.onComplete();
+							return;
+						}
+						item = iterator.next();
+					} catch (RuntimeException e) {
+						done = true;
+						subscriber.onError(e);
+						return;
+					}
+					demand.decrementAndGet();
+					subscriber.onNext(item);
+				}
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+	}
+}
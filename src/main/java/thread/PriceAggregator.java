@@ -0,0 +1,122 @@
+package thread;
+
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Add up prices in the order they come back, instead of calling Future.get() in the order they were asked for.
+ *
+ * Each price is folded into lock-free counters as soon as it arrives, and then dropped. So the memory used does not
+ * depend on how many quotes are added. The progress listener gets a snapshot after every price.
+ *
+ * Call complete() after the last add(). The returned future completes with the final statistics once every quote is done.
+ *
+ * Note : a snapshot taken while prices are still arriving reads each counter separately, so it may be a little
+ * inconsistent. The final one is exact.
+ *
+ * @author Sunny
+ */
+public class PriceAggregator {
+
+	private final Consumer<PriceStatistics> progressListener;
+
+	private final LongAdder count = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final DoubleAdder total = new DoubleAdder();
+	private final DoubleAccumulator min = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+	private final DoubleAccumulator max = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+
+	/**
+	 * Quotes not done yet, plus one until complete() is called.
+	 */
+	private final AtomicLong outstanding = new AtomicLong(1L);
+	private final AtomicBoolean sealed = new AtomicBoolean();
+	private final CompletableFuture<PriceStatistics> done = new CompletableFuture<>();
+
+	public PriceAggregator() {
+		this(s -> { });
+	}
+
+	public PriceAggregator( Consumer<PriceStatistics> progressListener_ ) {
+		super();
+		this.progressListener = progressListener_;
+	}
+
+	public void add( CompletionStage<Double> quote ) {
+		if (sealed.get()) {
+			throw new IllegalStateException("complete() has already been called");
+		}
+		outstanding.incrementAndGet();
+		quote.whenComplete((price, ex) -> {
+			if (ex == null) {
+				count.increment();
+				total.add(price);
+				min.accumulate(price);
+				max.accumulate(price);
+			} else {
+				failures.increment();
+			}
+			try {
+				progressListener.accept(snapshot());
+			} finally {
+				release();
+			}
+		});
+	}
+
+	public void add( Callable<Double> task, QuoteExecutor quoteExecutor ) {
+		add(quoteExecutor.submit(task));
+	}
+
+	/**
+	 * No more quotes will be added.
+	 */
+	public CompletableFuture<PriceStatistics> complete() {
+		if (sealed.compareAndSet(false, true)) {
+			release();
+		}
+		return done;
+	}
+
+	public PriceStatistics snapshot() {
+		return new PriceStatistics(count.sum(), failures.sum(), total.sum(), min.get(), max.get());
+	}
+
+	private void release() {
+		if (outstanding.decrementAndGet() == 0) {
+			done.complete(snapshot());
+		}
+	}
+
+	/**
+	 * The values of the futures, in the order they complete. Only results not yet taken from the stream are held.
+	 * A failed future throws CompletionException when the stream reaches it.
+	 */
+	public static <T> Stream<T> inCompletionOrder( Collection<? extends CompletableFuture<T>> futures ) {
+		BlockingQueue<CompletableFuture<T>> completed = new LinkedBlockingQueue<>();
+		for (CompletableFuture<T> future : futures) {
+			future.whenComplete((v, ex) -> completed.add(future));
+		}
+		return Stream.generate(() -> take(completed)).limit(futures.size()).map(CompletableFuture::join);
+	}
+
+	private static <T> CompletableFuture<T> take( BlockingQueue<CompletableFuture<T>> completed ) {
+		try {
+			return completed.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the next result", e);
+		}
+	}
+}
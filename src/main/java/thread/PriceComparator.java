@@ -0,0 +1,196 @@
+package thread;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoublePredicate;
+import java.util.function.Supplier;
+import model.Quote;
+import model.Shop;
+
+/**
+ * Ask every shop for every product and keep the lowest price of each product.
+ *
+ * All the quotes are asked for at the same time, but never more than maxConcurrency are in flight. The others wait
+ * in a queue without holding a thread.
+ *
+ * With a goodEnough predicate, the search for a product stops as soon as one price passes it. That price is the answer,
+ * and the quotes still queued or in flight for the product are cancelled.
+ *
+ * @author Sunny
+ */
+public class PriceComparator {
+
+	private static final DoublePredicate NEVER = price -> false;
+
+	private final List<Shop> shops;
+	private final int maxConcurrency;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final Queue<Request> waiting = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean draining = new AtomicBoolean();
+
+	public PriceComparator( Collection<? extends Shop> shops_, int maxConcurrency_ ) {
+		super();
+		if (shops_.isEmpty() || maxConcurrency_ < 1) {
+			throw new IllegalArgumentException("shops [" + shops_.size() + "] maxConcurrency [" + maxConcurrency_ + "]");
+		}
+		this.shops = new ArrayList<>(shops_);
+		this.maxConcurrency = maxConcurrency_;
+	}
+
+	public CompletableFuture<Map<String, Quote>> findBestPrices( Collection<String> products ) {
+		return findBestPrices(products, NEVER);
+	}
+
+	/**
+	 * A product which no shop could price is left out of the map.
+	 */
+	public CompletableFuture<Map<String, Quote>> findBestPrices( Collection<String> products, DoublePredicate goodEnough ) {
+		Map<String, CompletableFuture<Quote>> futures = new LinkedHashMap<>();
+		for (String product : products) {
+			futures.put(product, findBestPrice(product, goodEnough));
+		}
+		return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+			Map<String, Quote> best = new LinkedHashMap<>();
+			for (Map.Entry<String, CompletableFuture<Quote>> entry : futures.entrySet()) {
+				Quote quote = entry.getValue().join();
+				if (quote != null) {
+					best.put(entry.getKey(), quote);
+				}
+			}
+			return best;
+		});
+	}
+
+	/**
+	 * Completes with null when no shop could price the product.
+	 */
+	public CompletableFuture<Quote> findBestPrice( String product, DoublePredicate goodEnough ) {
+		CompletableFuture<Quote> result = new CompletableFuture<>();
+		List<CompletableFuture<Double>> requests = new ArrayList<>(shops.size());
+		List<CompletableFuture<Quote>> quotes = new ArrayList<>(shops.size());
+		for (Shop shop : shops) {
+			CompletableFuture<Double> request = submit(() -> shop.getPriceAsync(product));
+			requests.add(request);
+			CompletableFuture<Quote> quote = request.thenApply(price -> new Quote(shop, product, price));
+			quote.thenAccept(q -> {
+				if (goodEnough.test(q.getPrice())) {
+					result.complete(q);
+				}
+			});
+			quotes.add(quote);
+		}
+
+		CompletableFuture.allOf(quotes.toArray(new CompletableFuture<?>[0])).whenComplete((v, ex) -> result.complete(lowest(quotes)));
+		// stops the ones still waiting for a slot from being sent at all.
+		result.whenComplete((q, ex) -> requests.forEach(f -> f.cancel(true)));
+		return result;
+	}
+
+	private static Quote lowest( List<CompletableFuture<Quote>> quotes ) {
+		Quote best = null;
+		for (CompletableFuture<Quote> future : quotes) {
+			if (future.isDone() && !future.isCompletedExceptionally()) {
+				Quote quote = future.join();
+				if (best == null || quote.getPrice() < best.getPrice()) {
+					best = quote;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Number of quotes in flight right now.
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	private CompletableFuture<Double> submit( Supplier<CompletableFuture<Double>> call ) {
+		Request request = new Request(call);
+		waiting.add(request);
+		startWaiting();
+		return request.result;
+	}
+
+	/**
+	 * Only one thread drains the queue at a time. A request whose quote is already complete frees its slot and calls
+	 * startWaiting() while it is being started. That nested call returns at once and leaves the start to the drain loop
+	 * below, so the stack does not grow with each quote.
+	 */
+	private void startWaiting() {
+		do {
+			if (!draining.compareAndSet(false, true)) {
+				// the draining thread checks again before it stops.
+				return;
+			}
+			try {
+				drain();
+			} finally {
+				draining.set(false);
+			}
+		} while (!waiting.isEmpty() && inFlight.get() < maxConcurrency);
+	}
+
+	private void drain() {
+		while (!waiting.isEmpty()) {
+			int n = inFlight.get();
+			if (n >= maxConcurrency) {
+				return;
+			}
+			if (!inFlight.compareAndSet(n, n + 1)) {
+				continue;
+			}
+			Request request = waiting.poll();
+			if (request == null || request.result.isDone()) {
+				// someone else took it, or it was cancelled while waiting.
+				inFlight.decrementAndGet();
+				continue;
+			}
+			request.start();
+		}
+	}
+
+	private final class Request {
+
+		private final Supplier<CompletableFuture<Double>> call;
+		private final CompletableFuture<Double> result = new CompletableFuture<>();
+
+		private Request( Supplier<CompletableFuture<Double>> call_ ) {
+			this.call = call_;
+		}
+
+		private void start() {
+			CompletableFuture<Double> upstream;
+			try {
+				upstream = call.get();
+			} catch (RuntimeException e) {
+				upstream = new CompletableFuture<>();
+				upstream.completeExceptionally(e);
+			}
+			CompletableFuture<Double> started = upstream;
+			result.whenComplete((price, ex) -> started.cancel(true));
+			started.whenComplete((price, ex) -> {
+				// the slot is free before anyone waiting on the result can see it.
+				inFlight.decrementAndGet();
+				try {
+					if (ex == null) {
+						result.complete(price);
+					} else {
+						result.completeExceptionally(ex);
+					}
+				} finally {
+					startWaiting();
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package thread;
+
+/**
+ * Count, total, min and max of the prices seen so far.
+ *
+ * @author Sunny
+ */
+public final class PriceStatistics {
+
+	private final long count;
+	private final long failures;
+	private final double total;
+	private final double min;
+	private final double max;
+
+	public PriceStatistics( long count_, long failures_, double total_, double min_, double max_ ) {
+		super();
+		this.count = count_;
+		this.failures = failures_;
+		this.total = total_;
+		this.min = min_;
+		this.max = max_;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Number of quotes which completed exceptionally. They are not in count, total, min or max.
+	 */
+	public long getFailures() {
+		return failures;
+	}
+
+	public double getTotal() {
+		return total;
+	}
+
+	/**
+	 * Double.POSITIVE_INFINITY when there is no price yet.
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * Double.NEGATIVE_INFINITY when there is no price yet.
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	public double getAverage() {
+		return count == 0 ? 0.0 : total / count;
+	}
+
+	@Override
+	public String toString() {
+		return "count [" + count + "] failures [" + failures + "] total [" + String.format( "%.2f", total ) + "] min ["
+				+ String.format( "%.2f", min ) + "] max [" + String.format( "%.2f", max ) + "]";
+	}
+}
@@ -0,0 +1,274 @@
+package thread;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Run CallableTask ( or any Callable ) with at most maxConcurrency of them running at the same time.
+ *
+ * The backend is picked when the executor is created :
+ *
+ * PLATFORM  - a fixed thread pool with maxConcurrency threads.
+ * FORK_JOIN - its own ForkJoinPool. A task is only handed to the pool once it has a permit, the others wait in a
+ *             queue without a thread. The call runs inside ForkJoinPool.managedBlock(), so the pool adds a thread
+ *             while one is blocked instead of running out of workers, at most maxConcurrency of them. The common
+ *             pool is never used.
+ * VIRTUAL   - one virtual thread per task, only when the JVM has them ( JDK 21 or later ).
+ *
+ * After close(), submit() throws RejectedExecutionException and tasks still waiting for a permit complete exceptionally
+ * with it. Tasks already running finish.
+ *
+ * @author Sunny
+ */
+public class QuoteExecutor implements AutoCloseable {
+
+	public enum Backend {
+		PLATFORM, FORK_JOIN, VIRTUAL
+	}
+
+	/**
+	 * System property used by fromSystemProperty(), e.g. -Dquote.executor.backend=FORK_JOIN
+	 */
+	public static final String BACKEND_PROPERTY = "quote.executor.backend";
+
+	private final Backend backend;
+	private final ExecutorService executorService;
+	private final Semaphore permits;
+	private final Queue<Queued<?>> pending = new ConcurrentLinkedQueue<>();
+	private volatile boolean closed;
+
+	private QuoteExecutor( Backend backend_, ExecutorService executorService_, int maxConcurrency_ ) {
+		super();
+		this.backend = backend_;
+		this.executorService = executorService_;
+		this.permits = new Semaphore(maxConcurrency_);
+	}
+
+	public static QuoteExecutor create( Backend backend, int maxConcurrency ) {
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("maxConcurrency [" + maxConcurrency + "]");
+		}
+		switch (backend) {
+		case PLATFORM:
+			return new QuoteExecutor(backend, Executors.newFixedThreadPool(maxConcurrency, daemonThreads("quote-platform-")), maxConcurrency);
+		case FORK_JOIN:
+			return new QuoteExecutor(backend, new ForkJoinPool(Math.min(maxConcurrency, Runtime.getRuntime().availableProcessors())), maxConcurrency);
+		case VIRTUAL:
+			return new QuoteExecutor(backend, newVirtualThreadPerTaskExecutor(), maxConcurrency);
+		default:
+			throw new IllegalArgumentException("Unknown backend " + backend);
+		}
+	}
+
+	/**
+	 * Use the backend named by the system property. Without it, use virtual threads when the JVM has them, otherwise fork join.
+	 */
+	public static QuoteExecutor fromSystemProperty( int maxConcurrency ) {
+		String name = System.getProperty(BACKEND_PROPERTY);
+		Backend backend;
+		if (name != null) {
+			backend = Backend.valueOf(name.trim().toUpperCase());
+		} else {
+			backend = isVirtualThreadSupported() ? Backend.VIRTUAL : Backend.FORK_JOIN;
+		}
+		return create(backend, maxConcurrency);
+	}
+
+	public static boolean isVirtualThreadSupported() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	public Backend getBackend() {
+		return backend;
+	}
+
+	public <T> CompletableFuture<T> submit( Callable<T> task ) {
+		if (closed) {
+			throw new RejectedExecutionException("QuoteExecutor is closed");
+		}
+		CompletableFuture<T> future = new CompletableFuture<>();
+		if (backend == Backend.FORK_JOIN) {
+			pending.add(new Queued<>(future, task));
+			if (closed) {
+				// close() may have drained the queue before this task was added.
+				rejectPending();
+			}
+			dispatch();
+		} else {
+			executorService.execute(() -> complete(future, () -> callWithPermit(task)));
+		}
+		return future;
+	}
+
+	public <T> List<CompletableFuture<T>> submitAll( Collection<? extends Callable<T>> tasks ) {
+		List<CompletableFuture<T>> futures = new ArrayList<>(tasks.size());
+		for (Callable<T> task : tasks) {
+			futures.add(submit(task));
+		}
+		return futures;
+	}
+
+	private static <T> void complete( CompletableFuture<T> future, Callable<T> call ) {
+		try {
+			future.complete(call.call());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.completeExceptionally(e);
+		} catch (Exception e) {
+			future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Hand pending tasks to the fork join pool while there are permits. Called after each submit and each release,
+	 * so whichever comes last sees both the task and the permit.
+	 */
+	private void dispatch() {
+		while (!pending.isEmpty() && permits.tryAcquire()) {
+			Queued<?> next = pending.poll();
+			if (next == null) {
+				permits.release();
+				continue;
+			}
+			try {
+				executorService.execute(next);
+			} catch (RejectedExecutionException e) {
+				permits.release();
+				next.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	private void rejectPending() {
+		Queued<?> queued;
+		while ((queued = pending.poll()) != null) {
+			queued.future.completeExceptionally(new RejectedExecutionException("QuoteExecutor is closed"));
+		}
+	}
+
+	private <T> T callWithPermit( Callable<T> task ) throws Exception {
+		permits.acquire();
+		try {
+			return task.call();
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * The caller already holds the permit, so only the call itself counts as blocking.
+	 */
+	private <T> T callManaged( Callable<T> task ) throws Exception {
+		CallBlocker<T> blocker = new CallBlocker<>(task);
+		ForkJoinPool.managedBlock(blocker);
+		if (blocker.failure != null) {
+			throw blocker.failure;
+		}
+		return blocker.result;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		executorService.shutdown();
+		rejectPending();
+	}
+
+	public boolean awaitTermination( long timeout, TimeUnit unit ) throws InterruptedException {
+		return executorService.awaitTermination(timeout, unit);
+	}
+
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Virtual threads need JDK 21 or later, running on " + System.getProperty("java.version"), e);
+		}
+	}
+
+	private static ThreadFactory daemonThreads( String prefix ) {
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread thread = new Thread(r, prefix + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * A FORK_JOIN task waiting for a permit. It gives the permit back and dispatches the next one when it is done.
+	 */
+	private final class Queued<T> implements Runnable {
+
+		private final CompletableFuture<T> future;
+		private final Callable<T> task;
+
+		private Queued( CompletableFuture<T> future_, Callable<T> task_ ) {
+			this.future = future_;
+			this.task = task_;
+		}
+
+		@Override
+		public void run() {
+			try {
+				complete(future, () -> callManaged(task));
+			} finally {
+				permits.release();
+				dispatch();
+			}
+		}
+	}
+
+	private static final class CallBlocker<T> implements ForkJoinPool.ManagedBlocker {
+
+		private final Callable<T> task;
+		private T result;
+		private Exception failure;
+		private boolean done;
+
+		private CallBlocker( Callable<T> task_ ) {
+			this.task = task_;
+		}
+
+		@Override
+		public boolean block() throws InterruptedException {
+			if (!done) {
+				try {
+					result = task.call();
+				} catch (InterruptedException e) {
+					throw e;
+				} catch (Exception e) {
+					failure = e;
+				}
+				done = true;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			return done;
+		}
+	}
+
+}
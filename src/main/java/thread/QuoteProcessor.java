@@ -0,0 +1,292 @@
+package thread;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import model.Quote;
+import model.Shop;
+
+/**
+ * Turn product names into quotes, with backpressure.
+ *
+ * At most parallelism products are taken from upstream and not yet handed on downstream. That covers the prices
+ * being fetched and the quotes waiting for the subscriber to ask for them. So a slow subscriber stops new getPrice
+ * calls, and memory stays bounded however fast the products come.
+ *
+ * SUBMISSION order hands the quotes on in the order of the products. COMPLETION order hands each one on as soon as
+ * it is ready. A failed price ends the stream with onError and cancels upstream.
+ *
+ * @author Sunny
+ */
+public class QuoteProcessor implements Flow.Processor<String, Quote> {
+
+	public enum Order {
+		SUBMISSION, COMPLETION
+	}
+
+	private final Function<String, CompletableFuture<Quote>> pricer;
+	private final int parallelism;
+	private final Order order;
+
+	private final AtomicInteger wip = new AtomicInteger();
+
+	// guarded by this
+	private Flow.Subscription upstream;
+	private Flow.Subscriber<? super Quote> downstream;
+	private final ArrayDeque<CompletableFuture<Quote>> pending = new ArrayDeque<>();
+	private final ArrayDeque<Quote> ready = new ArrayDeque<>();
+	private long requestedFromUpstream;
+	private long demand;
+	private boolean upstreamDone, terminated, cancelled;
+	private Throwable error;
+
+	/**
+	 * Prices come from shop.getPriceAsync().
+	 */
+	public QuoteProcessor( Shop shop, int parallelism_, Order order_ ) {
+		this(product -> shop.getPriceAsync(product).thenApply(price -> new Quote(shop, product, price)), parallelism_, order_);
+	}
+
+	/**
+	 * Prices come from a CallableTask run by the quote executor.
+	 */
+	public QuoteProcessor( Shop shop, QuoteExecutor quoteExecutor, int parallelism_, Order order_ ) {
+		this(product -> quoteExecutor.submit(new CallableTask(shop, product)).thenApply(price -> new Quote(shop, product, price)), parallelism_, order_);
+	}
+
+	private QuoteProcessor( Function<String, CompletableFuture<Quote>> pricer_, int parallelism_, Order order_ ) {
+		super();
+		if (parallelism_ < 1) {
+			throw new IllegalArgumentException("parallelism [" + parallelism_ + "]");
+		}
+		this.pricer = pricer_;
+		this.parallelism = parallelism_;
+		this.order = order_;
+	}
+
+	@Override
+	public void subscribe( Flow.Subscriber<? super Quote> subscriber ) {
+		synchronized (this) {
+			if (downstream != null) {
+				throw new IllegalStateException("QuoteProcessor only takes one subscriber");
+			}
+			downstream = subscriber;
+		}
+		subscriber.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request( long n ) {
+				synchronized (QuoteProcessor.this) {
+					if (n <= 0) {
+						error = new IllegalArgumentException("request must be positive, was [" + n + "]");
+					} else {
+						demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+					}
+				}
+				drain();
+			}
+
+			@Override
+			public void cancel() {
+				cancelAll();
+			}
+		});
+		drain();
+	}
+
+	@Override
+	public void onSubscribe( Flow.Subscription subscription ) {
+		synchronized (this) {
+			if (upstream != null) {
+				subscription.cancel();
+				return;
+			}
+			upstream = subscription;
+		}
+		drain();
+	}
+
+	@Override
+	public void onNext( String product ) {
+		synchronized (this) {
+			if (cancelled) {
+				return;
+			}
+		}
+		CompletableFuture<Quote> quote;
+		try {
+			quote = pricer.apply(product);
+		} catch (RuntimeException e) {
+			quote = new CompletableFuture<>();
+			quote.completeExceptionally(e);
+		}
+		synchronized (this) {
+			requestedFromUpstream--;
+			if (cancelled) {
+				quote.cancel(true);
+				return;
+			}
+			pending.add(quote);
+		}
+		CompletableFuture<Quote> added = quote;
+		quote.whenComplete((q, ex) -> {
+			if (order == Order.COMPLETION) {
+				synchronized (this) {
+					if (!pending.remove(added)) {
+						// cancelled.
+						return;
+					}
+					if (ex == null) {
+						ready.add(q);
+					} else if (error == null) {
+						error = ex;
+					}
+				}
+			}
+			drain();
+		});
+	}
+
+	@Override
+	public void onError( Throwable throwable ) {
+		synchronized (this) {
+			if (error == null) {
+				error = throwable;
+			}
+		}
+		drain();
+	}
+
+	@Override
+	public void onComplete() {
+		synchronized (this) {
+			upstreamDone = true;
+		}
+		drain();
+	}
+
+	/**
+	 * Only one thread at a time runs the loop, so the subscriber is never called concurrently.
+	 */
+	private void drain() {
+		if (wip.getAndIncrement() != 0) {
+			return;
+		}
+		int missed = 1;
+		do {
+			Flow.Subscriber<? super Quote> subscriber;
+			Flow.Subscription subscription;
+			synchronized (this) {
+				subscriber = downstream;
+				subscription = upstream;
+			}
+			if (subscriber != null && subscription != null) {
+				if (emit(subscriber)) {
+					cancelAll();
+					return;
+				}
+				long more;
+				synchronized (this) {
+					more = cancelled || upstreamDone || error != null ? 0 : parallelism - occupied() - requestedFromUpstream;
+					requestedFromUpstream += Math.max(more, 0);
+				}
+				if (more > 0) {
+					subscription.request(more);
+				}
+			}
+			missed = wip.addAndGet(-missed);
+		} while (missed != 0);
+	}
+
+	/**
+	 * Hand on what is ready and wanted. Return true when the stream has ended.
+	 */
+	private boolean emit( Flow.Subscriber<? super Quote> subscriber ) {
+		for (;;) {
+			Quote quote = null;
+			Throwable failure = null;
+			boolean complete = false;
+			synchronized (this) {
+				if (terminated || cancelled) {
+					return true;
+				}
+				if (error != null) {
+					failure = error;
+				} else if (demand > 0) {
+					quote = pollReady();
+				}
+				if (failure == null && quote == null) {
+					if (error != null) {
+						failure = error;
+					} else if (upstreamDone && occupied() == 0) {
+						complete = true;
+					} else {
+						return false;
+					}
+				}
+				if (quote != null) {
+					demand--;
+				} else {
+					terminated = true;
+				}
+			}
+			if (failure != null) {
+				subscriber.onError(failure);
+				return true;
+			}
+			if (complete) {
+				subscriber.onComplete();
+				return true;
+			}
+			subscriber.onNext(quote);
+		}
+	}
+
+	/**
+	 * Called holding the lock. A failed head sets error instead.
+	 */
+	private Quote pollReady() {
+		if (order == Order.COMPLETION) {
+			return ready.poll();
+		}
+		CompletableFuture<Quote> head = pending.peek();
+		if (head == null || !head.isDone()) {
+			return null;
+		}
+		pending.poll();
+		try {
+			return head.join();
+		} catch (RuntimeException e) {
+			error = e.getCause() != null ? e.getCause() : e;
+			return null;
+		}
+	}
+
+	/**
+	 * Called holding the lock.
+	 */
+	private int occupied() {
+		return pending.size() + ready.size();
+	}
+
+	private void cancelAll() {
+		Flow.Subscription subscription;
+		List<CompletableFuture<Quote>> toCancel;
+		synchronized (this) {
+			if (cancelled) {
+				return;
+			}
+			cancelled = true;
+			subscription = upstream;
+			toCancel = new ArrayList<>(pending);
+			pending.clear();
+			ready.clear();
+		}
+		if (subscription != null) {
+			subscription.cancel();
+		}
+		toCancel.forEach(f -> f.cancel(true));
+	}
+}
@@ -0,0 +1,263 @@
+package thread;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import model.Shop;
+
+/**
+ * Deadlines and hedging for price requests.
+ *
+ * Each call gets a deadline, after which it fails with a TimeoutException.
+ * When the first request is still not back after the hedge delay, the same request is sent once more and whichever
+ * answers first wins. The other one is cancelled. The hedge delay is the hedgeQuantile ( e.g. 0.95 ) of the recent
+ * attempt latencies, or initialHedgeDelay until enough of them have been seen.
+ *
+ * Every attempt counts, the ones which failed and the ones which lost as well, otherwise the window only sees the fast
+ * answers and the hedge delay keeps shrinking. A loser is cancelled before its answer arrives, so it counts with the
+ * time it had been waiting. That is only known to be past the quantile when it waited longer than the hedge delay,
+ * so a loser cancelled sooner is left out.
+ *
+ * getPrices() only waits until an overall deadline and returns the prices which have arrived by then.
+ *
+ * Note : cancelling a QuoteExecutor task does not interrupt a getPrice() already running. It only stops waiting for it.
+ *
+ * @author Sunny
+ */
+public class RequestPolicy {
+
+	private static final int MAX_ATTEMPTS = 2;
+
+	private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, r -> {
+		Thread thread = new Thread(r, "request-policy-timer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	static {
+		// most deadlines are cancelled because the answer came back in time.
+		TIMER.setRemoveOnCancelPolicy(true);
+	}
+
+	private final long callTimeoutNanos;
+	private final long initialHedgeDelayNanos;
+	private final double hedgeQuantile;
+	private final LatencyWindow latencies = new LatencyWindow(1024);
+
+	public RequestPolicy( long callTimeout_, long initialHedgeDelay_, TimeUnit unit_, double hedgeQuantile_ ) {
+		super();
+		if (callTimeout_ <= 0 || initialHedgeDelay_ < 0 || hedgeQuantile_ <= 0 || hedgeQuantile_ > 1) {
+			throw new IllegalArgumentException("callTimeout [" + callTimeout_ + "] initialHedgeDelay [" + initialHedgeDelay_
+					+ "] hedgeQuantile [" + hedgeQuantile_ + "]");
+		}
+		this.callTimeoutNanos = unit_.toNanos(callTimeout_);
+		this.initialHedgeDelayNanos = unit_.toNanos(initialHedgeDelay_);
+		this.hedgeQuantile = hedgeQuantile_;
+	}
+
+	/**
+	 * p95 hedging with the given deadline and initial hedge delay.
+	 */
+	public RequestPolicy( long callTimeout_, long initialHedgeDelay_, TimeUnit unit_ ) {
+		this(callTimeout_, initialHedgeDelay_, unit_, 0.95);
+	}
+
+	/**
+	 * request is called once for the first request, and once more for the hedge.
+	 */
+	public <T> CompletableFuture<T> call( Supplier<CompletableFuture<T>> request ) {
+		long hedgeDelayNanos = getHedgeDelay(TimeUnit.NANOSECONDS);
+		Call<T> call = new Call<>(request, hedgeDelayNanos);
+		call.attempt();
+		ScheduledFuture<?> hedge = TIMER.schedule(call::attempt, hedgeDelayNanos, TimeUnit.NANOSECONDS);
+		ScheduledFuture<?> deadline = TIMER.schedule(
+				() -> call.result.completeExceptionally(new TimeoutException("No answer within " + TimeUnit.NANOSECONDS.toMillis(callTimeoutNanos) + " ms")),
+				callTimeoutNanos, TimeUnit.NANOSECONDS);
+		call.result.whenComplete((v, ex) -> {
+			hedge.cancel(false);
+			deadline.cancel(false);
+			call.cancelAttempts();
+		});
+		return call.result;
+	}
+
+	public <T> CompletableFuture<T> call( Callable<T> task, QuoteExecutor quoteExecutor ) {
+		return call(() -> quoteExecutor.submit(task));
+	}
+
+	public CompletableFuture<Double> getPrice( Shop shop, String product ) {
+		return call(() -> shop.getPriceAsync(product));
+	}
+
+	/**
+	 * Ask for every product at the same time and return the prices which arrive within the timeout.
+	 * Products without a price by then are cancelled and left out.
+	 */
+	public Map<String, Double> getPrices( Shop shop, Collection<String> products, long timeout, TimeUnit unit ) throws InterruptedException {
+		Map<String, CompletableFuture<Double>> futures = new LinkedHashMap<>();
+		for (String product : products) {
+			futures.put(product, getPrice(shop, product));
+		}
+		return collectUntil(futures, timeout, unit);
+	}
+
+	/**
+	 * Wait until every future is done or the timeout is over, then return the values which arrived.
+	 */
+	public static <K, T> Map<K, T> collectUntil( Map<K, ? extends CompletableFuture<T>> futures, long timeout, TimeUnit unit ) throws InterruptedException {
+		try {
+			CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).get(timeout, unit);
+		} catch (ExecutionException | TimeoutException e) {
+			// some failed or are late, keep the others.
+		}
+		Map<K, T> arrived = new LinkedHashMap<>();
+		for (Map.Entry<K, ? extends CompletableFuture<T>> entry : futures.entrySet()) {
+			CompletableFuture<T> future = entry.getValue();
+			if (future.isDone() && !future.isCompletedExceptionally()) {
+				arrived.put(entry.getKey(), future.join());
+			} else {
+				future.cancel(true);
+			}
+		}
+		return arrived;
+	}
+
+	public long getHedgeDelay( TimeUnit unit ) {
+		long quantile = latencies.quantile(hedgeQuantile);
+		return unit.convert(quantile < 0 ? initialHedgeDelayNanos : quantile, TimeUnit.NANOSECONDS);
+	}
+
+	private final class Call<T> {
+
+		private final Supplier<CompletableFuture<T>> request;
+		private final long hedgeDelayNanos;
+		private final CompletableFuture<T> result = new CompletableFuture<>();
+		private final List<CompletableFuture<T>> attempts = new ArrayList<>(MAX_ATTEMPTS);
+		private int started, failed; // guarded by this
+
+		private Call( Supplier<CompletableFuture<T>> request_, long hedgeDelayNanos_ ) {
+			this.request = request_;
+			this.hedgeDelayNanos = hedgeDelayNanos_;
+		}
+
+		private void attempt() {
+			synchronized (this) {
+				if (result.isDone() || started == MAX_ATTEMPTS) {
+					return;
+				}
+				started++;
+			}
+			long startNanos = System.nanoTime();
+			CompletableFuture<T> future;
+			try {
+				future = request.get();
+			} catch (RuntimeException e) {
+				future = new CompletableFuture<>();
+				future.completeExceptionally(e);
+			}
+			synchronized (this) {
+				attempts.add(future);
+			}
+			if (result.isDone()) {
+				// lost the race with the other attempt or the deadline.
+				future.cancel(true);
+				return;
+			}
+			future.whenComplete((v, ex) -> {
+				long latencyNanos = System.nanoTime() - startNanos;
+				if (!(ex instanceof CancellationException) || latencyNanos >= hedgeDelayNanos) {
+					latencies.record(latencyNanos);
+				}
+				if (ex == null) {
+					result.complete(v);
+				} else {
+					failed(ex);
+				}
+			});
+		}
+
+		private void failed( Throwable ex ) {
+			boolean retry, last;
+			synchronized (this) {
+				failed++;
+				retry = started < MAX_ATTEMPTS;
+				last = failed == started;
+			}
+			if (retry) {
+				// do not wait for the hedge delay when the only request has already failed.
+				attempt();
+			} else if (last) {
+				result.completeExceptionally(ex);
+			}
+		}
+
+		private void cancelAttempts() {
+			List<CompletableFuture<T>> copy;
+			synchronized (this) {
+				copy = new ArrayList<>(attempts);
+			}
+			for (CompletableFuture<T> attempt : copy) {
+				attempt.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * The latest latencies in a ring. The quantile is worked out again every REFRESH records, not on every call.
+	 */
+	private static final class LatencyWindow {
+
+		private static final int MIN_SAMPLES = 20;
+		private static final int REFRESH = 64;
+
+		private final long[] ring;
+		private long count; // guarded by this
+		private volatile long[] sorted = new long[0];
+
+		private LatencyWindow( int size ) {
+			this.ring = new long[size];
+		}
+
+		private void record( long nanos ) {
+			long[] refreshed = null;
+			synchronized (this) {
+				ring[(int) (count % ring.length)] = nanos;
+				count++;
+				if (count < MIN_SAMPLES) {
+					return;
+				}
+				if (count == MIN_SAMPLES || count % REFRESH == 0) {
+					refreshed = Arrays.copyOf(ring, (int) Math.min(count, ring.length));
+				}
+			}
+			if (refreshed != null) {
+				Arrays.sort(refreshed);
+				sorted = refreshed;
+			}
+		}
+
+		/**
+		 * -1 until there are enough samples.
+		 */
+		private long quantile( double q ) {
+			long[] snapshot = sorted;
+			if (snapshot.length == 0) {
+				return -1L;
+			}
+			return snapshot[Math.min(snapshot.length - 1, (int) Math.ceil(q * snapshot.length) - 1)];
+		}
+	}
+
+}
@@ -0,0 +1,275 @@
+package thread;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A named, sized pool for one kind of work, so parallel streams and supplyAsync() stop sharing
+ * ForkJoinPool.commonPool().
+ *
+ * COMPUTE  - CPU bound work, e.g. stream aggregations, in a ForkJoinPool. Size it to the cores it may use.
+ *            invoke() runs a stream pipeline inside the pool : the tasks a parallel stream forks from a worker
+ *            thread run in that worker's pool, not the common pool.
+ * BLOCKING - work which waits, e.g. Shop.getPrice(), in a fixed thread pool. Size it to the calls allowed in
+ *            flight. When it is full, more calls queue here and never take a thread from a compute pool. It is
+ *            not a ForkJoinPool, as one adds a spare thread for every worker blocked in managedBlock(), which
+ *            CompletableFuture.get() uses, and Java 8 has no way to cap that.
+ *
+ * supplyAsync() and executor() run async chains in the pool, e.g. thenApplyAsync(fn, pool.executor()).
+ *
+ * Worker threads are daemons named name-1, name-2 ...
+ *
+ * @author Sunny
+ */
+public class WorkloadPool implements AutoCloseable {
+
+	public enum Kind {
+		COMPUTE, BLOCKING
+	}
+
+	/**
+	 * The BLOCKING pool a thread belongs to, so invoke() from inside it does not wait on itself.
+	 */
+	private static final ThreadLocal<WorkloadPool> OWNER = new ThreadLocal<>();
+
+	private final String name;
+	private final Kind kind;
+	// one of the two, by kind.
+	private final ForkJoinPool forkJoinPool;
+	private final ThreadPoolExecutor threadPool;
+	private final ExecutorService pool;
+
+	private WorkloadPool( String name_, Kind kind_, int parallelism_ ) {
+		super();
+		if (parallelism_ < 1) {
+			throw new IllegalArgumentException("parallelism [" + parallelism_ + "]");
+		}
+		this.name = name_;
+		this.kind = kind_;
+		if (kind_ == Kind.COMPUTE) {
+			this.forkJoinPool = new ForkJoinPool(parallelism_, workerThreads(name_), null, false);
+			this.threadPool = null;
+			this.pool = forkJoinPool;
+		} else {
+			this.forkJoinPool = null;
+			this.threadPool = new ThreadPoolExecutor(parallelism_, parallelism_, 0L, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<>(), threads(name_, this));
+			this.pool = threadPool;
+		}
+	}
+
+	public static WorkloadPool compute( String name, int parallelism ) {
+		return new WorkloadPool(name, Kind.COMPUTE, parallelism);
+	}
+
+	public static WorkloadPool blocking( String name, int parallelism ) {
+		return new WorkloadPool(name, Kind.BLOCKING, parallelism);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Run the pipeline in this pool and wait for its result, e.g.
+	 * pool.invoke(() -> list.parallelStream().mapToLong(l -> l).sum())
+	 *
+	 * In a BLOCKING pool the pipeline runs on one of its threads, and a parallel stream in it still forks into the
+	 * common pool.
+	 */
+	public <T> T invoke( Supplier<T> pipeline ) {
+		if (forkJoinPool != null) {
+			if (ForkJoinTask.getPool() == forkJoinPool) {
+				return pipeline.get();
+			}
+			return forkJoinPool.invoke(ForkJoinTask.adapt((Callable<T>) pipeline::get));
+		}
+		if (OWNER.get() == this) {
+			return pipeline.get();
+		}
+		try {
+			return supplyAsync(pipeline).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	public void run( Runnable pipeline ) {
+		invoke(() -> {
+			pipeline.run();
+			return null;
+		});
+	}
+
+	public <T> CompletableFuture<T> supplyAsync( Supplier<T> supplier ) {
+		return CompletableFuture.supplyAsync(supplier, pool);
+	}
+
+	public CompletableFuture<Void> runAsync( Runnable runnable ) {
+		return CompletableFuture.runAsync(runnable, pool);
+	}
+
+	/**
+	 * For the *Async( ..., executor ) steps of a CompletableFuture chain.
+	 */
+	public Executor executor() {
+		return pool;
+	}
+
+	public Metrics getMetrics() {
+		return new Metrics(this);
+	}
+
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+	public boolean awaitTermination( long timeout, TimeUnit unit ) throws InterruptedException {
+		return pool.awaitTermination(timeout, unit);
+	}
+
+	@Override
+	public String toString() {
+		return getMetrics().toString();
+	}
+
+	private static ThreadFactory threads( String prefix, WorkloadPool owner ) {
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread thread = new Thread(() -> {
+				OWNER.set(owner);
+				r.run();
+			}, prefix + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	private static ForkJoinPool.ForkJoinWorkerThreadFactory workerThreads( String prefix ) {
+		AtomicInteger count = new AtomicInteger();
+		return forkJoinPool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+			thread.setName(prefix + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * What the pool was doing when the metrics were taken. The counts are estimates, as the pools say. A BLOCKING
+	 * pool steals nothing and has no worker queues : its queued tasks are 0, and its running threads are its active
+	 * ones.
+	 */
+	public static final class Metrics {
+
+		private final String name;
+		private final Kind kind;
+		private final int parallelism;
+		private final int poolSize;
+		private final int activeThreads;
+		private final int runningThreads;
+		private final long queuedTasks;
+		private final int queuedSubmissions;
+		private final long stealCount;
+
+		private Metrics( WorkloadPool workloadPool ) {
+			this.name = workloadPool.name;
+			this.kind = workloadPool.kind;
+			ForkJoinPool forkJoinPool = workloadPool.forkJoinPool;
+			if (forkJoinPool != null) {
+				this.parallelism = forkJoinPool.getParallelism();
+				this.poolSize = forkJoinPool.getPoolSize();
+				this.activeThreads = forkJoinPool.getActiveThreadCount();
+				this.runningThreads = forkJoinPool.getRunningThreadCount();
+				this.queuedTasks = forkJoinPool.getQueuedTaskCount();
+				this.queuedSubmissions = forkJoinPool.getQueuedSubmissionCount();
+				this.stealCount = forkJoinPool.getStealCount();
+			} else {
+				ThreadPoolExecutor threadPool = workloadPool.threadPool;
+				this.parallelism = threadPool.getMaximumPoolSize();
+				this.poolSize = threadPool.getPoolSize();
+				this.activeThreads = threadPool.getActiveCount();
+				this.runningThreads = activeThreads;
+				this.queuedTasks = 0;
+				this.queuedSubmissions = threadPool.getQueue().size();
+				this.stealCount = 0;
+			}
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		public int getParallelism() {
+			return parallelism;
+		}
+
+		public int getPoolSize() {
+			return poolSize;
+		}
+
+		/**
+		 * Threads running or stealing tasks, blocked ones included.
+		 */
+		public int getActiveThreads() {
+			return activeThreads;
+		}
+
+		/**
+		 * Threads not blocked waiting to join a task or in managedBlock().
+		 */
+		public int getRunningThreads() {
+			return runningThreads;
+		}
+
+		/**
+		 * Tasks forked into the worker queues.
+		 */
+		public long getQueuedTasks() {
+			return queuedTasks;
+		}
+
+		/**
+		 * Tasks submitted from outside the pool and not started yet.
+		 */
+		public int getQueuedSubmissions() {
+			return queuedSubmissions;
+		}
+
+		public long getStealCount() {
+			return stealCount;
+		}
+
+		@Override
+		public String toString() {
+			return name + " [" + kind + " parallelism=" + parallelism + " poolSize=" + poolSize + " active=" + activeThreads
+					+ " running=" + runningThreads + " queuedTasks=" + queuedTasks + " queuedSubmissions=" + queuedSubmissions
+					+ " steals=" + stealCount + "]";
+		}
+	}
+
+}
@@ -0,0 +1,190 @@
+
+package datatime;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * AsciiFormatter writes the same text as String.format and
+ * DateTimeFormatter.ISO_LOCAL_DATE_TIME.
+ *
+ * @author aus
+ */
+public class AsciiFormatterTest
+{
+    private final char[] chars = new char[400];
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(400);
+
+    @Test
+    public void roundsLikeStringFormat()
+    {
+        double[] values = { 1.005, 0.125, 2.675, 1.115, 0.045, 1e-5, 123456789.125, 1.0 / 3, 9.995, 0.005, -0.0,
+                -1.005, -0.001, 0.5, 1.5, 2.5, 0, 99.99, 99.995, 4.35, 1e11 + 0.125, 5e-324, 1e12, 1e300,
+                Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MAX_VALUE, -Double.MIN_NORMAL };
+        for (double value : values)
+        {
+            for (int decimals = 0; decimals <= AsciiFormatter.MAX_DECIMALS; decimals++)
+            {
+                checkFixed(value, decimals);
+            }
+        }
+    }
+
+    @Test
+    public void randomPrices()
+    {
+        Random random = new Random(11);
+        for (int i = 0; i < 100000; i++)
+        {
+            // prices with a few decimals hit the half way cases.
+            double price = random.nextInt(10000000) / Math.pow(10, random.nextInt(6));
+            checkFixed(random.nextBoolean() ? price : -price, random.nextInt(4));
+            checkFixed(random.nextDouble() * Math.pow(10, random.nextInt(12)), random.nextInt(AsciiFormatter.MAX_DECIMALS + 1));
+        }
+    }
+
+    @Test
+    public void dateTimesLikeIsoLocalDateTime()
+    {
+        LocalDateTime[] dateTimes = { LocalDateTime.of(2016, 1, 15, 10, 0), LocalDateTime.of(2016, 1, 15, 10, 15, 30, 250000000),
+                LocalDateTime.of(1, 1, 1, 0, 0, 0, 1), LocalDateTime.of(-1, 12, 31, 23, 59, 59, 999999999),
+                LocalDateTime.of(12345, 6, 7, 8, 9, 10), LocalDateTime.MIN, LocalDateTime.MAX,
+                LocalDateTime.of(1969, 12, 31, 23, 59, 59, 120) };
+        for (LocalDateTime dateTime : dateTimes)
+        {
+            checkDateTime(dateTime);
+        }
+
+        Random random = new Random(3);
+        long from = LocalDateTime.of(1800, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+        for (int i = 0; i < 100000; i++)
+        {
+            long second = from + (long) (random.nextDouble() * 400 * 365.25 * 86400);
+            checkDateTime(LocalDateTime.ofEpochSecond(second, random.nextBoolean() ? 0 : random.nextInt(1000000000), ZoneOffset.UTC));
+        }
+    }
+
+    @Test
+    public void noGarbage()
+    {
+        LocalDateTime dateTime = LocalDateTime.of(2016, 1, 15, 10, 15, 30);
+        long localEpochSecond = dateTime.toEpochSecond(ZoneOffset.UTC);
+        double price = 123.456;
+
+        // warm up, so the JIT has compiled the loops before measuring.
+        long checksum = formatMany(price, localEpochSecond, 200000);
+
+        long allocated = allocatedBytes();
+        checksum += formatMany(price, localEpochSecond, 1000000);
+        allocated = allocatedBytes() - allocated;
+
+        System.out.println("bytes allocated for 1000000 prices and timestamps : " + allocated);
+        assertTrue(checksum > 0);
+        if (allocated >= 0)
+        {
+            assertTrue("allocated " + allocated, allocated < 100000);
+        }
+    }
+
+    @Test
+    public void compareWithStringFormat()
+    {
+        int count = 1000000;
+        LocalDateTime start = LocalDateTime.of(2016, 1, 1, 0, 0);
+
+        long allocated1 = allocatedBytes();
+        long time1 = System.currentTimeMillis();
+        long length = 0;
+        for (int i = 0; i < count; i++)
+        {
+            length += String.format(Locale.ROOT, "%.2f", i * 0.37).length();
+            length += start.plusSeconds(i).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME).length();
+        }
+        long time2 = System.currentTimeMillis();
+        long allocated2 = allocatedBytes();
+        long formatted = 0;
+        long startSecond = start.toEpochSecond(ZoneOffset.UTC);
+        for (int i = 0; i < count; i++)
+        {
+            formatted += AsciiFormatter.formatFixed(i * 0.37, 2, chars, 0);
+            formatted += AsciiFormatter.formatDateTime(startSecond + i, 0, chars, 0);
+        }
+        long time3 = System.currentTimeMillis();
+        long allocated3 = allocatedBytes();
+
+        System.out.println("String.format, DateTimeFormatter time taken : " + (time2 - time1) + " allocated : " + (allocated2 - allocated1));
+        System.out.println("AsciiFormatter                   time taken : " + (time3 - time2) + " allocated : " + (allocated3 - allocated2));
+
+        assertEquals(length, formatted);
+    }
+
+    private long formatMany(double price, long localEpochSecond, int count)
+    {
+        long checksum = 0;
+        for (int i = 0; i < count; i++)
+        {
+            checksum += AsciiFormatter.formatFixed(price + i, 2, chars, 0);
+            checksum += AsciiFormatter.formatDateTime(localEpochSecond + i, 0, chars, 0);
+            bytes.clear();
+            AsciiFormatter.formatFixed(price + i, 2, bytes);
+            AsciiFormatter.formatDateTime(localEpochSecond + i, 0, bytes);
+            checksum += bytes.position();
+        }
+        return checksum;
+    }
+
+    private void checkFixed(double value, int decimals)
+    {
+        String expected = String.format(Locale.ROOT, "%." + decimals + "f", value);
+        int end = AsciiFormatter.formatFixed(value, decimals, chars, 0);
+        assertEquals(value + " " + decimals, expected, new String(chars, 0, end));
+
+        bytes.clear();
+        AsciiFormatter.formatFixed(value, decimals, bytes);
+        assertEquals(value + " " + decimals, expected, text(bytes));
+    }
+
+    private void checkDateTime(LocalDateTime dateTime)
+    {
+        String expected = dateTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        int end = AsciiFormatter.formatDateTime(dateTime, chars, 0);
+        assertEquals(expected, new String(chars, 0, end));
+
+        bytes.clear();
+        AsciiFormatter.formatDateTime(dateTime.toEpochSecond(ZoneOffset.UTC), dateTime.getNano(), bytes);
+        assertEquals(expected, text(bytes));
+    }
+
+    private static String text(ByteBuffer buffer)
+    {
+        byte[] array = new byte[buffer.position()];
+        ByteBuffer read = buffer.duplicate();
+        read.flip();
+        read.get(array);
+        return new String(array, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Bytes allocated by this thread so far, or -1 when the JVM cannot tell.
+     */
+    private static long allocatedBytes()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,126 @@
+
+package datatime;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * IsoDateTimeParser gives the same answers as the LENIENT ISO_DATE_TIME
+ * formatter of DateTimeTest.comtel_dates.
+ *
+ * Run with -Dtimestamps=100000000 for the full comparison.
+ *
+ * @author aus
+ */
+public class IsoDateTimeParserTest
+{
+    private static final int TIMESTAMPS = Integer.getInteger("timestamps", 1000000);
+
+    private final DateTimeFormatter lenient =
+            DateTimeFormatter.ISO_DATE_TIME.withResolverStyle(ResolverStyle.LENIENT);
+
+    @Test
+    public void comtelDates()
+    {
+        LocalDateTime ldt = IsoDateTimeParser.parse("2016-01-15T25:00:00");
+
+        assertEquals(LocalDateTime.of(2016, 1, 16, 1, 0, 0), ldt);
+        assertEquals(LocalDateTime.parse("2016-01-15T25:00:00", lenient), ldt);
+    }
+
+    @Test
+    public void rollsOverLikeLenient()
+    {
+        String[] texts = { "2016-13-15T25:00:00", "2016-02-00T24:00:00", "2016-00-31T99:99:99",
+                "2016-12-31T23:59:60", "2016-02-29T12:00:00", "2015-02-29T12:00:00", "0000-01-01T00:00:00",
+                "1969-12-31T23:59:59", "9999-12-31T47:59:59", "2016-01-15T25:00:00.5", "2016-01-15T01:02:03.123456789" };
+
+        for (String text : texts)
+        {
+            LocalDateTime expected = LocalDateTime.parse(text, lenient);
+            assertEquals(text, expected, IsoDateTimeParser.parse(text));
+            assertEquals(text, expected.toEpochSecond(ZoneOffset.UTC),
+                         IsoDateTimeParser.toEpochSecond(text.substring(0, IsoDateTimeParser.LENGTH)));
+        }
+    }
+
+    @Test
+    public void randomTimestamps()
+    {
+        Random random = new Random(42);
+        byte[] line = new byte[IsoDateTimeParser.LENGTH + 2];
+        for (int i = 0; i < 20000; i++)
+        {
+            String text = String.format("%04d-%02d-%02dT%02d:%02d:%02d", random.nextInt(10000), random.nextInt(100),
+                                        random.nextInt(100), random.nextInt(100), random.nextInt(100), random.nextInt(100));
+            long expected = LocalDateTime.parse(text, lenient).toEpochSecond(ZoneOffset.UTC);
+
+            assertEquals(text, expected, IsoDateTimeParser.toEpochSecond(text));
+            assertEquals(text, expected, IsoDateTimeParser.toEpochSecond("> " + text, 2));
+            System.arraycopy(text.getBytes(StandardCharsets.US_ASCII), 0, line, 2, IsoDateTimeParser.LENGTH);
+            assertEquals(text, expected, IsoDateTimeParser.toEpochSecond(line, 2));
+        }
+    }
+
+    @Test(expected = DateTimeParseException.class)
+    public void wrongSeparator()
+    {
+        IsoDateTimeParser.toEpochSecond("2016-01-15 25:00:00");
+    }
+
+    @Test(expected = DateTimeParseException.class)
+    public void notADigit()
+    {
+        IsoDateTimeParser.parse("2016-01-1x25:00:00");
+    }
+
+    @Test
+    public void compareWithLocalDateTimeParse()
+    {
+        byte[] bytes = new byte[TIMESTAMPS * IsoDateTimeParser.LENGTH];
+        String[] texts = new String[TIMESTAMPS];
+        LocalDateTime start = LocalDateTime.of(2016, 1, 1, 0, 0);
+        for (int i = 0; i < TIMESTAMPS; i++)
+        {
+            texts[i] = start.plusSeconds(i * 37L).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            System.arraycopy(texts[i].getBytes(StandardCharsets.US_ASCII), 0, bytes, i * IsoDateTimeParser.LENGTH,
+                             IsoDateTimeParser.LENGTH);
+        }
+
+        long time1 = System.currentTimeMillis();
+        long expected = 0;
+        for (String text : texts)
+        {
+            expected += LocalDateTime.parse(text, lenient).toEpochSecond(ZoneOffset.UTC);
+        }
+        long time2 = System.currentTimeMillis();
+        long result = 0;
+        for (String text : texts)
+        {
+            result += IsoDateTimeParser.toEpochSecond(text, 0);
+        }
+        long time3 = System.currentTimeMillis();
+        long fromBytes = 0;
+        for (int offset = 0; offset < bytes.length; offset += IsoDateTimeParser.LENGTH)
+        {
+            fromBytes += IsoDateTimeParser.toEpochSecond(bytes, offset);
+        }
+        long time4 = System.currentTimeMillis();
+
+        System.out.println("LocalDateTime.parse             time taken : " + (time2 - time1));
+        System.out.println("IsoDateTimeParser CharSequence  time taken : " + (time3 - time2));
+        System.out.println("IsoDateTimeParser byte[]        time taken : " + (time4 - time3));
+
+        assertEquals(expected, result);
+        assertEquals(expected, fromBytes);
+    }
+}
@@ -0,0 +1,143 @@
+
+package datatime;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Random;
+
+import datatime.ZoneConverter.Overlap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ZoneConverter gives the same instants as ZonedDateTime, around every
+ * transition of the test zones.
+ *
+ * @author aus
+ */
+public class ZoneConverterTest
+{
+    private static final String[] ZONES = { "Europe/London", "America/New_York", "Australia/Lord_Howe",
+            "Europe/Moscow", "Asia/Kolkata", "Pacific/Apia", "America/Sao_Paulo", "UTC" };
+
+    private final ZoneId london = ZoneId.of("Europe/London");
+
+    @Test
+    public void clockChangeForward()
+    {
+        ZoneConverter converter = new ZoneConverter(london, 2010, 2020);
+        LocalDateTime inTheGap = LocalDateTime.of(2016, Month.MARCH, 27, 1, 30);
+
+        assertEquals(ZonedDateTime.of(inTheGap, london).toEpochSecond(),
+                     converter.toEpochSecond(inTheGap, Overlap.EARLIER));
+        assertEquals(ZoneOffset.UTC, converter.getOffset(inTheGap.toEpochSecond(ZoneOffset.UTC), Overlap.LATER));
+    }
+
+    @Test
+    public void clockChangeBack()
+    {
+        ZoneConverter converter = new ZoneConverter(london, 2010, 2020);
+        LocalDateTime inTheOverlap = LocalDateTime.of(2016, Month.OCTOBER, 30, 1, 30);
+        ZonedDateTime earlier = ZonedDateTime.of(inTheOverlap, london);
+
+        assertEquals(earlier.toInstant(), converter.toInstant(inTheOverlap, Overlap.EARLIER));
+        assertEquals(earlier.withLaterOffsetAtOverlap().toInstant(), converter.toInstant(inTheOverlap, Overlap.LATER));
+        assertEquals(3600, converter.toEpochSecond(inTheOverlap, Overlap.LATER)
+                - converter.toEpochSecond(inTheOverlap, Overlap.EARLIER));
+    }
+
+    @Test
+    public void sameAsZonedDateTimeAroundEveryTransition()
+    {
+        for (String id : ZONES)
+        {
+            ZoneId zone = ZoneId.of(id);
+            ZoneRules rules = zone.getRules();
+            ZoneConverter converter = new ZoneConverter(zone, 1970, 2040);
+
+            ZoneOffsetTransition transition = rules.nextTransition(LocalDateTime.of(1969, 12, 1, 0, 0).toInstant(ZoneOffset.UTC));
+            while (transition != null && transition.getDateTimeBefore().getYear() <= 2040)
+            {
+                long local = transition.getDateTimeBefore().toEpochSecond(ZoneOffset.UTC);
+                for (long l = local - 3 * 3600; l <= local + 3 * 3600; l += 60)
+                {
+                    check(converter, zone, l);
+                }
+                transition = rules.nextTransition(transition.getInstant());
+            }
+        }
+    }
+
+    @Test
+    public void sameAsZonedDateTimeInsideAndOutsideTheRange()
+    {
+        Random random = new Random(7);
+        long from = LocalDateTime.of(1900, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+        long to = LocalDateTime.of(2100, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+        for (String id : ZONES)
+        {
+            ZoneId zone = ZoneId.of(id);
+            ZoneConverter converter = new ZoneConverter(zone, 2000, 2030);
+            for (int i = 0; i < 20000; i++)
+            {
+                check(converter, zone, from + (long) (random.nextDouble() * (to - from)));
+            }
+        }
+    }
+
+    @Test
+    public void coversTheYears()
+    {
+        ZoneConverter converter = new ZoneConverter(london, 2016, 2016);
+
+        assertTrue(converter.covers(LocalDateTime.of(2016, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC)));
+        assertTrue(converter.covers(LocalDateTime.of(2016, 12, 31, 23, 59, 59).toEpochSecond(ZoneOffset.UTC)));
+        assertFalse(converter.covers(LocalDateTime.of(2017, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC)));
+    }
+
+    @Test
+    public void compareWithZonedDateTime()
+    {
+        int count = 5000000;
+        long start = LocalDateTime.of(2016, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+        ZoneConverter converter = new ZoneConverter(london, 2016, 2017);
+
+        long time1 = System.currentTimeMillis();
+        long expected = 0;
+        for (int i = 0; i < count; i++)
+        {
+            LocalDateTime local = LocalDateTime.ofEpochSecond(start + i * 7L, 0, ZoneOffset.UTC);
+            expected += ZonedDateTime.of(local, london).toEpochSecond();
+        }
+        long time2 = System.currentTimeMillis();
+        long result = 0;
+        for (int i = 0; i < count; i++)
+        {
+            result += converter.toEpochSecond(start + i * 7L);
+        }
+        long time3 = System.currentTimeMillis();
+
+        System.out.println("ZonedDateTime  time taken : " + (time2 - time1));
+        System.out.println("ZoneConverter  time taken : " + (time3 - time2));
+
+        assertEquals(expected, result);
+    }
+
+    private static void check(ZoneConverter converter, ZoneId zone, long local)
+    {
+        ZonedDateTime zoned = ZonedDateTime.of(LocalDateTime.ofEpochSecond(local, 0, ZoneOffset.UTC), zone);
+
+        assertEquals(zone + " " + zoned, zoned.toEpochSecond(), converter.toEpochSecond(local, Overlap.EARLIER));
+        assertEquals(zone + " " + zoned, zoned.withLaterOffsetAtOverlap().toEpochSecond(),
+                     converter.toEpochSecond(local, Overlap.LATER));
+    }
+}
@@ -0,0 +1,71 @@
+package model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Single price requests arriving close together go to the shop as one batch.
+ *
+ * @author User
+ */
+public class BatchingShopTest {
+
+	private AtomicInteger backendCalls;
+	private Shop countingShop;
+
+	@Before
+	public void setUp() throws Exception {
+		backendCalls = new AtomicInteger();
+		countingShop = new Shop() {
+			@Override
+			public CompletableFuture<Map<String, Double>> getPricesAsync(Collection<String> products) {
+				backendCalls.incrementAndGet();
+				return super.getPricesAsync(products);
+			}
+		};
+	}
+
+	@Test
+	public void requestsInTheSameWindowShareOneBackendCall() {
+		Shop shop = new BatchingShop(countingShop, 50L, 1000);
+
+		List<CompletableFuture<Double>> futures = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			futures.add(shop.getPriceAsync(i % 2 == 0 ? "book" : "phone"));
+		}
+		futures.forEach(f -> assertTrue(f.join() > 0));
+
+		assertEquals(1, backendCalls.get());
+	}
+
+	@Test
+	public void fullBatchIsSentStraightAway() {
+		Shop shop = new BatchingShop(countingShop, 60000L, 10);
+
+		List<CompletableFuture<Double>> futures = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			futures.add(shop.getPriceAsync("product" + i));
+		}
+		futures.forEach(CompletableFuture::join);
+
+		assertEquals(10, backendCalls.get());
+	}
+
+	@Test
+	public void blockingGetPriceGoesThroughTheBatch() {
+		Shop shop = new BatchingShop(countingShop, 10L, 1000);
+
+		assertTrue(shop.getPrice("book") > 0);
+		assertEquals(1, backendCalls.get());
+	}
+}
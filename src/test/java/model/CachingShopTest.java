@@ -0,0 +1,173 @@
+package model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Hot products are answered from the cache, and concurrent misses share one request to the shop.
+ *
+ * @author User
+ */
+public class CachingShopTest {
+
+	private AtomicInteger backendCalls;
+	private Shop countingShop;
+
+	@Before
+	public void setUp() throws Exception {
+		backendCalls = new AtomicInteger();
+		countingShop = new Shop() {
+			@Override
+			public CompletableFuture<Double> getPriceAsync(String product) {
+				backendCalls.incrementAndGet();
+				return super.getPriceAsync(product);
+			}
+		};
+	}
+
+	@Test
+	public void thousandConcurrentCallersCauseOneBackendCall() throws Exception {
+		CachingShop shop = new CachingShop(countingShop, 1, TimeUnit.MINUTES, 100);
+
+		ExecutorService executorService = Executors.newFixedThreadPool(100);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Double>> futures = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			futures.add(executorService.submit(() -> {
+				start.await();
+				return shop.getPrice("book");
+			}));
+		}
+		start.countDown();
+
+		double firstPrice = futures.get(0).get();
+		for (Future<Double> future : futures) {
+			assertEquals(firstPrice, future.get(), 0.0);
+		}
+		executorService.shutdown();
+
+		assertEquals(1, backendCalls.get());
+		assertEquals(1, shop.getLoadCount());
+		assertEquals(1000, shop.getHitCount() + shop.getMissCount());
+	}
+
+	/**
+	 * A caller missing the cache just before the loader stores the price and leaves must not load it again.
+	 */
+	@Test
+	public void eachProductIsLoadedOnceUnderContention() throws Exception {
+		ConcurrentMap<String, AtomicInteger> loadsPerProduct = new ConcurrentHashMap<>();
+		Shop instantShop = new Shop() {
+			@Override
+			public CompletableFuture<Double> getPriceAsync(String product) {
+				loadsPerProduct.computeIfAbsent(product, p -> new AtomicInteger()).incrementAndGet();
+				return CompletableFuture.completedFuture(1.0);
+			}
+		};
+		CachingShop shop = new CachingShop(instantShop, 1, TimeUnit.MINUTES, 10000);
+
+		ExecutorService executorService = Executors.newFixedThreadPool(8);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			futures.add(executorService.submit(() -> {
+				start.await();
+				for (int i = 0; i < 5000; i++) {
+					shop.getPriceAsync("product" + i).join();
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executorService.shutdown();
+
+		assertEquals(5000, loadsPerProduct.size());
+		for (Map.Entry<String, AtomicInteger> entry : loadsPerProduct.entrySet()) {
+			assertEquals(entry.getKey(), 1, entry.getValue().get());
+		}
+		assertEquals(5000, shop.getLoadCount());
+	}
+
+	@Test
+	public void leastRecentlyUsedPriceIsEvictedWhenFull() {
+		CachingShop shop = new CachingShop(countingShop, 1, TimeUnit.MINUTES, 2);
+
+		shop.getPrices(Arrays.asList("book", "phone"));
+		shop.getPrice("book");
+		shop.getPrice("pen");
+
+		assertEquals(2, shop.size());
+		assertEquals(1, shop.getEvictionCount());
+		assertEquals(3, backendCalls.get());
+
+		// phone was the least recently used, so it has gone and book is still there.
+		shop.getPrice("book");
+		assertEquals(3, backendCalls.get());
+		shop.getPrice("phone");
+		assertEquals(4, backendCalls.get());
+	}
+
+	/**
+	 * A shop which throws instead of returning a failed future must not leave the product stuck loading.
+	 */
+	@Test
+	public void shopWhichThrowsIsAskedAgain() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		Shop throwingShop = new Shop() {
+			@Override
+			public CompletableFuture<Double> getPriceAsync(String product) {
+				if (calls.incrementAndGet() == 1) {
+					throw new IllegalStateException("closed");
+				}
+				return CompletableFuture.completedFuture(2.0);
+			}
+		};
+		CachingShop shop = new CachingShop(throwingShop, 1, TimeUnit.MINUTES, 10);
+
+		try {
+			shop.getPriceAsync("book").join();
+			fail("the shop threw");
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		assertEquals(2.0, shop.getPriceAsync("book").get(5, TimeUnit.SECONDS), 0.0);
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	public void expiredPriceIsLoadedAgain() throws InterruptedException {
+		CachingShop shop = new CachingShop(countingShop, 50, TimeUnit.MILLISECONDS, 10);
+
+		shop.getPrice("book");
+		shop.getPrice("book");
+		assertEquals(1, backendCalls.get());
+		assertEquals(1, shop.getHitCount());
+
+		Thread.sleep(100L);
+		assertTrue(shop.getPrice("book") > 0);
+		assertEquals(2, backendCalls.get());
+		assertEquals(1, shop.getEvictionCount());
+	}
+}
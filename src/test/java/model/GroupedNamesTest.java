@@ -0,0 +1,202 @@
+package model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * GroupedNames views follow adds, removes and updates without streaming the
+ * groups again.
+ *
+ * @author aus
+ */
+public class GroupedNamesTest
+{
+    private Name name1 = new Name("John", "Smith", Gender.M);
+    private Name name2 = new Name("Paul", "Mccartney", Gender.M);
+    private Name name3 = new Name("Will", "Smith", Gender.M);
+    private Name name4 = new Name("Paul", "Gascoigne", Gender.M);
+    private Name name5 = new Name("Linda", "Mccartney", Gender.F);
+
+    private GroupedNames names;
+    private GroupedNames.View pauls, males;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Map<String, List<Name>> map = new LinkedHashMap<>();
+        map.put("Group A", Arrays.asList(name1, name2));
+        map.put("Group B", Arrays.asList(name3, name4));
+        map.put("Group C", Arrays.asList(name5));
+        map.put("Group D", Arrays.asList(name1, name2, name4, name5));
+        names = GroupedNames.of(map);
+        pauls = names.register(n -> n.getFirstName().equals("Paul"));
+        males = names.register(Name::isMale);
+    }
+
+    @Test
+    public void sameAsFilterValue()
+    {
+        assertEquals(Arrays.asList("Group A", "Group B", "Group C", "Group D"),
+                     names.groups().stream().collect(Collectors.toList()));
+        assertEquals(4, pauls.asMap().size());
+        assertEquals(1, pauls.count("Group A"));
+        assertEquals(1, pauls.count("Group B"));
+        assertEquals(0, pauls.count("Group C"));
+        assertEquals(Arrays.asList(name2, name4), pauls.get("Group D"));
+        assertEquals(Collections.emptyList(), pauls.asMap().get("Group C"));
+
+        assertEquals(2, males.count("Group A"));
+        assertEquals(2, males.count("Group B"));
+        assertEquals(0, males.count("Group C"));
+        assertEquals(3, males.count("Group D"));
+    }
+
+    @Test
+    public void addAndRemove()
+    {
+        Name paul = new Name("Paul", "Simon", Gender.M);
+
+        assertTrue(names.add("Group C", paul));
+        assertFalse(names.add("Group C", paul));
+        assertEquals(Arrays.asList(paul), pauls.get("Group C"));
+        assertEquals(Arrays.asList(name5, paul), names.get("Group C"));
+
+        assertTrue(names.remove("Group D", name2));
+        assertFalse(names.remove("Group D", name2));
+        assertEquals(Arrays.asList(name4), pauls.get("Group D"));
+        assertEquals(2, males.count("Group D"));
+        // still in Group A.
+        assertEquals(Arrays.asList(name2), pauls.get("Group A"));
+
+        assertTrue(names.add("Group E", name3));
+        assertEquals(5, males.asMap().size());
+        assertEquals(0, pauls.count("Group E"));
+    }
+
+    @Test
+    public void updateMovesTheNameInEveryGroup()
+    {
+        assertTrue(names.update(name1, n -> n.setFirstName("Paul")));
+
+        assertEquals(Arrays.asList(name1, name2), pauls.get("Group A"));
+        assertEquals(Arrays.asList(name1, name2, name4), pauls.get("Group D"));
+
+        names.update(name2, n -> n.setGender(Gender.F));
+        assertEquals(1, males.count("Group A"));
+        assertEquals(2, males.count("Group D"));
+
+        assertFalse(names.update(new Name("Paul", "Simon", Gender.M), n -> n.setFirstName("Art")));
+    }
+
+    @Test
+    public void readsAreCachedUntilAChange()
+    {
+        List<Name> first = pauls.get("Group D");
+        Map<String, List<Name>> map = pauls.asMap();
+
+        assertSame(first, pauls.get("Group D"));
+        assertSame(map, pauls.asMap());
+
+        // no Paul comes or goes, so the pauls view is left alone.
+        names.add("Group D", new Name("Ringo", "Starr", Gender.M));
+        assertSame(first, pauls.get("Group D"));
+        assertSame(map, pauls.asMap());
+
+        names.add("Group D", new Name("Paul", "Simon", Gender.M));
+        assertEquals(3, pauls.get("Group D").size());
+        assertEquals(3, pauls.asMap().get("Group D").size());
+    }
+
+    @Test
+    public void lateViewsSeeWhatIsThere()
+    {
+        GroupedNames.View smiths = names.register(n -> n.getLastName().equals("Smith"));
+
+        assertEquals(1, smiths.count("Group A"));
+        assertEquals(Arrays.asList(name1), smiths.get("Group D"));
+
+        names.unregister(smiths);
+        names.add("Group C", new Name("Will", "Smith", Gender.M));
+        assertEquals(0, smiths.count("Group C"));
+    }
+
+    /**
+     * The first read after a change does not wait for a writer holding the
+     * lock, here one stuck inside update().
+     */
+    @Test
+    public void readsDoNotWaitForWriters() throws Exception
+    {
+        names.add("Group D", new Name("Paul", "Simon", Gender.M));
+        CountDownLatch changing = new CountDownLatch(1), release = new CountDownLatch(1);
+        CompletableFuture<Boolean> writer = CompletableFuture.supplyAsync(() -> names.update(name1, n -> {
+            changing.countDown();
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(changing.await(5, TimeUnit.SECONDS));
+
+        try
+        {
+            CompletableFuture<Integer> reader = CompletableFuture.supplyAsync(
+                    () -> pauls.get("Group D").size() + pauls.asMap().get("Group D").size() + names.get("Group D").size());
+            assertEquals(Integer.valueOf(3 + 3 + 5), reader.get(5, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            release.countDown();
+        }
+        assertTrue(writer.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void readersWhileWriting() throws Exception
+    {
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 10000; i++)
+            {
+                Name paul = new Name("Paul", "No " + i, Gender.M);
+                names.add("Group C", paul);
+                names.remove("Group C", paul);
+            }
+            writing.set(false);
+        });
+
+        long reads = 0;
+        while (writing.get())
+        {
+            int count = pauls.count("Group C");
+            List<Name> list = pauls.get("Group C");
+            assertTrue(count == 0 || count == 1);
+            assertTrue(list.size() <= 1);
+            reads++;
+        }
+        writer.get();
+
+        assertEquals(0, pauls.count("Group C"));
+        assertTrue(reads > 0);
+    }
+}
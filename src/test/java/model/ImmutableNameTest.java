@@ -0,0 +1,113 @@
+
+package model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * ImmutableName against Name in distinct().
+ *
+ * @author aus
+ */
+public class ImmutableNameTest
+{
+    private static final int NAMES = Integer.getInteger("names", 2000000);
+
+    private Name name1 = new Name("John", "Smith", Gender.M);
+
+    @Test
+    public void sameFieldsAsName()
+    {
+        ImmutableName immutable = name1.toImmutable();
+
+        assertEquals("John", immutable.getFirstName());
+        assertEquals("Smith", immutable.getLastName());
+        assertEquals(name1.hashCode(), immutable.hashCode());
+        assertEquals(name1, immutable.toName());
+        assertFalse(immutable.equals(name1));
+    }
+
+    /**
+     * The with methods replace the setters.
+     */
+    @Test
+    public void withMethodsGiveANewName()
+    {
+        ImmutableName john = ImmutableName.of("John", "Smith", Gender.M);
+        ImmutableName will = john.withFirstName("Will");
+
+        assertEquals("John", john.getFirstName());
+        assertEquals("Will", will.getFirstName());
+        assertNotEquals(john, will);
+        assertEquals(john, will.withFirstName("John"));
+        assertEquals(Gender.F, john.withGender(Gender.F).getGender());
+        assertEquals(null, john.withLastName(null).getLastName());
+    }
+
+    @Test
+    public void internerHandsOutOneInstance()
+    {
+        ImmutableName.Interner interner = new ImmutableName.Interner();
+
+        ImmutableName a = interner.intern(new String("Paul"), new String("Mccartney"), Gender.M);
+        ImmutableName b = interner.intern(new Name("Paul", "Mccartney", Gender.M));
+
+        assertSame(a, b);
+        assertEquals(1, interner.size());
+    }
+
+    @Test
+    public void compareDistinct()
+    {
+        List<Name> names = new ArrayList<>(NAMES);
+        for (int i = 0; i < NAMES; i++)
+        {
+            names.add(new Name("First" + (i % 100), "Last" + (i % 70), i % 3 == 0 ? Gender.F : Gender.M));
+        }
+        List<ImmutableName> immutableNames = new ArrayList<>(NAMES);
+        ImmutableName.Interner interner = new ImmutableName.Interner();
+        List<ImmutableName> internedNames = new ArrayList<>(NAMES);
+        for (Name name : names)
+        {
+            immutableNames.add(name.toImmutable());
+            internedNames.add(interner.intern(name));
+        }
+
+        long count1 = 0, count2 = 0, count3 = 0;
+        long time1 = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++)
+        {
+            count1 = names.stream().distinct().count();
+        }
+        long time2 = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++)
+        {
+            count2 = immutableNames.stream().distinct().count();
+        }
+        long time3 = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++)
+        {
+            count3 = internedNames.stream().distinct().count();
+        }
+        long time4 = System.currentTimeMillis();
+
+        System.out.println(NAMES + " names, " + count1 + " distinct");
+        System.out.println("Name                   time taken : " + (time2 - time1));
+        System.out.println("ImmutableName          time taken : " + (time3 - time2));
+        System.out.println("ImmutableName interned time taken : " + (time4 - time3));
+
+        Set<Name> expected = new HashSet<>(names);
+        assertEquals(expected.size(), count1);
+        assertEquals(count1, count2);
+        assertEquals(count1, count3);
+    }
+}
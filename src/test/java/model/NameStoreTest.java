@@ -0,0 +1,115 @@
+
+package model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Filter names column by column.
+ *
+ * @author aus
+ */
+public class NameStoreTest
+{
+    private static final int ROWS = Integer.getInteger("rows", 5000000);
+
+    private static final String[] FIRST_NAMES =
+            { "John", "Paul", "Will", "Linda", "George", "Ringo", "Mary" };
+    private static final String[] LAST_NAMES =
+            { "Smith", "Mccartney", "Gascoigne", "Lennon", "Starr", "Harrison" };
+
+    private Name name1 = new Name("John", "Smith", Gender.M);
+    private Name name2 = new Name("Paul", "Mccartney", Gender.M);
+    private Name name3 = new Name("Will", "Smith", Gender.M);
+    private Name name4 = new Name("Paul", "Gascoigne", Gender.M);
+    private Name name5 = new Name("Linda", "Mccartney", Gender.F);
+
+    private NameStore store;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        store = NameStore.of(Arrays.asList(name1, name2, name3, name4, name5));
+    }
+
+    @Test
+    public void predicates()
+    {
+        assertEquals(4, store.isMale().cardinality());
+        assertEquals(1, store.isFemale().cardinality());
+        assertEquals(2, store.firstNameEquals("Paul").cardinality());
+        assertEquals(0, store.firstNameEquals("Nobody").cardinality());
+        assertEquals(4, store.lastNameIn("Smith", "Mccartney").cardinality());
+        assertEquals(5, store.all().cardinality());
+    }
+
+    @Test
+    public void combineSelections()
+    {
+        Selection malePauls = store.isMale().and(store.firstNameEquals("Paul"));
+        assertEquals(Arrays.asList(name2, name4), store.stream(malePauls).collect(Collectors.toList()));
+
+        Selection mccartneysOrWomen = store.lastNameEquals("Mccartney").or(store.isFemale());
+        assertEquals(Arrays.asList(name2, name5), store.stream(mccartneysOrWomen).collect(Collectors.toList()));
+
+        Selection menNotSmith = store.isMale().andNot(store.lastNameEquals("Smith"));
+        assertEquals(1, menNotSmith.nextSetBit(0));
+        assertEquals(3, menNotSmith.nextSetBit(2));
+        assertEquals(-1, menNotSmith.nextSetBit(4));
+    }
+
+    /**
+     * The same stream code as ComplicatedStreamTest still works.
+     */
+    @Test
+    public void streamAdapter()
+    {
+        assertEquals(Arrays.asList(name1, name2, name3, name4, name5), store.stream().collect(Collectors.toList()));
+        assertEquals(2, store.stream().filter(n -> n.getFirstName().equals("Paul")).count());
+        assertEquals(4, store.stream().parallel().filter(Name::isMale).count());
+    }
+
+    /**
+     * The same filter on a List&lt;Name&gt; and on the columns.
+     */
+    @Test
+    public void compareScanWithList()
+    {
+        List<Name> list = new ArrayList<>(ROWS);
+        NameStore big = new NameStore(new SymbolTable(), ROWS);
+        for (int i = 0; i < ROWS; i++)
+        {
+            Name name = new Name(new String(FIRST_NAMES[i % FIRST_NAMES.length]),
+                                 new String(LAST_NAMES[i % LAST_NAMES.length]),
+                                 i % 3 == 0 ? Gender.F : Gender.M);
+            list.add(name);
+            big.add(name);
+        }
+
+        long listCount = 0, storeCount = 0;
+        long time1 = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++)
+        {
+            listCount = list.stream().filter(n -> n.isMale() && n.getFirstName().equals("Paul")).count();
+        }
+        long time2 = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++)
+        {
+            storeCount = big.isMale().and(big.firstNameEquals("Paul")).cardinality();
+        }
+        long time3 = System.currentTimeMillis();
+
+        System.out.println(ROWS + " rows");
+        System.out.println("List<Name> time taken : " + (time2 - time1));
+        System.out.println("NameStore  time taken : " + (time3 - time2));
+
+        assertEquals(listCount, storeCount);
+    }
+}
@@ -0,0 +1,135 @@
+
+package model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Names as packed long handles over interned strings.
+ *
+ * @author aus
+ */
+public class NameTableTest
+{
+    /**
+     * Run with -Dnames=10000000 ( and a big enough -Xmx ) for the 10M
+     * comparison.
+     */
+    private static final int NAMES = Integer.getInteger("names", 1000000);
+
+    private static final String[] FIRST_NAMES =
+            { "John", "Paul", "Will", "Linda", "George", "Ringo", "Mary" };
+    private static final String[] LAST_NAMES =
+            { "Smith", "Mccartney", "Gascoigne", "Lennon", "Starr", "Harrison" };
+
+    private NameTable table;
+    private Name name1 = new Name("John", "Smith", Gender.M);
+    private Name name5 = new Name("Linda", "Mccartney", Gender.F);
+
+    @Before
+    public void setUp() throws Exception
+    {
+        table = new NameTable();
+    }
+
+    @Test
+    public void handleKeepsTheName()
+    {
+        long handle1 = table.handle(name1);
+        long handle5 = table.handle(name5);
+
+        assertEquals("John", table.getFirstName(handle1));
+        assertEquals("Smith", table.getLastName(handle1));
+        assertTrue(NameTable.isMale(handle1));
+        assertFalse(NameTable.isMale(handle5));
+        assertTrue(NameTable.isFemale(handle5));
+        assertEquals(name1, table.toName(handle1));
+        assertEquals(name5, table.toName(handle5));
+        assertEquals(null, table.toName(table.handle("A", "B", null)).getGender());
+    }
+
+    @Test
+    public void sameNameSameHandleAndSameStrings()
+    {
+        long handle1 = table.handle(new String("Paul"), new String("Smith"), Gender.M);
+        long handle2 = table.handle(new String("Paul"), new String("Smith"), Gender.M);
+
+        assertEquals(handle1, handle2);
+        assertSame(table.toName(handle1).getFirstName(), table.toName(handle2).getFirstName());
+        assertEquals(2, table.getSymbols().size());
+    }
+
+    @Test
+    public void manySymbols()
+    {
+        for (int i = 0; i < 100000; i++)
+        {
+            assertEquals(i, table.getSymbols().intern("symbol" + i));
+        }
+        for (int i = 0; i < 100000; i++)
+        {
+            assertEquals(i, table.getSymbols().find("symbol" + i));
+            assertEquals("symbol" + i, table.getSymbols().symbol(i));
+        }
+        assertEquals(-1, table.getSymbols().find("missing"));
+    }
+
+    /**
+     * Every Name read from a file comes with its own String copies. Compare
+     * them with the handles.
+     */
+    @Test
+    public void compareMemoryFootprint()
+    {
+        long before = usedMemory();
+        List<Name> names = new ArrayList<>(NAMES);
+        for (int i = 0; i < NAMES; i++)
+        {
+            names.add(new Name(new String(FIRST_NAMES[i % FIRST_NAMES.length]),
+                               new String(LAST_NAMES[i % LAST_NAMES.length]),
+                               i % 3 == 0 ? Gender.F : Gender.M));
+        }
+        long listBytes = usedMemory() - before;
+
+        before = usedMemory();
+        long[] handles = new long[NAMES];
+        for (int i = 0; i < NAMES; i++)
+        {
+            Name name = names.get(i);
+            handles[i] = table.handle(name.getFirstName(), name.getLastName(), name.getGender());
+        }
+        long handleBytes = usedMemory() - before;
+
+        long males = names.stream().filter(Name::isMale).count();
+        long maleHandles = Arrays.stream(handles).filter(NameTable::isMale).count();
+
+        System.out.println(NAMES + " names");
+        System.out.println("List<Name> bytes per name : " + listBytes / NAMES + ", about "
+                + listBytes / NAMES * 10 + " MB for 10M names");
+        System.out.println("long[]     bytes per name : " + handleBytes / NAMES + ", about "
+                + handleBytes / NAMES * 10 + " MB for 10M names");
+
+        assertEquals(males, maleHandles);
+        assertEquals(FIRST_NAMES.length + LAST_NAMES.length, table.getSymbols().size());
+        assertTrue(handleBytes < listBytes);
+    }
+
+    private static long usedMemory()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
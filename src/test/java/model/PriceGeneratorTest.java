@@ -0,0 +1,123 @@
+package model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compare the random sources a shop can use.
+ *
+ * @author User
+ */
+public class PriceGeneratorTest {
+
+	private static final int THREADS = Runtime.getRuntime().availableProcessors();
+	private static final int CALLS_PER_THREAD = 2000000;
+
+	@Test
+	public void deterministicGivesSamePricesWhateverTheThreadCount() {
+		PriceGenerator generator = PriceGenerator.deterministic(42L);
+
+		double[] sequential = IntStream.range(0, 100000).mapToDouble(i -> generator.nextFactor("product" + i)).toArray();
+		double[] parallel = IntStream.range(0, 100000).parallel().mapToDouble(i -> generator.nextFactor("product" + i)).toArray();
+
+		assertArrayEquals(sequential, parallel, 0.0);
+		assertTrue(Arrays.stream(sequential).allMatch(d -> d >= 0 && d < 1));
+	}
+
+	@Test
+	public void shopsWithTheSameSeedGiveTheSamePrices() {
+		List<String> products = Arrays.asList("book", "phone", "battery", "pen");
+
+		Map<String, Double> prices1 = new Shop(PriceGenerator.deterministic(42L)).getPrices(products);
+		Map<String, Double> prices2 = new Shop(PriceGenerator.deterministic(42L)).getPrices(products);
+
+		assertEquals(prices1, prices2);
+	}
+
+	@Test
+	public void deterministicTellsCollidingHashCodesApart() {
+		PriceGenerator generator = PriceGenerator.deterministic(42L);
+
+		assertEquals("Aa".hashCode(), "BB".hashCode());
+		assertNotEquals(generator.nextFactor("Aa"), generator.nextFactor("BB"), 0.0);
+	}
+
+	/**
+	 * The shop's timer only hands out the answers, so the generator is called by the threads asking, all at once.
+	 */
+	@Test
+	public void pricesAreWorkedOutByTheCallers() throws Exception {
+		Set<String> threads = ConcurrentHashMap.newKeySet();
+		PriceGenerator generator = PriceGenerator.threadLocal();
+		Shop shop = new Shop(product -> {
+			threads.add(Thread.currentThread().getName());
+			return generator.nextFactor(product);
+		});
+
+		ExecutorService executorService = Executors.newFixedThreadPool(4, r -> new Thread(r, "caller-" + r.hashCode()));
+		List<Future<Double>> prices = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			String product = "product" + i;
+			prices.add(executorService.submit(() -> shop.getPrice(product)));
+		}
+		for (Future<Double> price : prices) {
+			assertTrue(price.get() > 0);
+		}
+		executorService.shutdown();
+
+		assertFalse(threads.isEmpty());
+		assertTrue(threads.toString(), threads.stream().allMatch(name -> name.startsWith("caller-")));
+	}
+
+	/**
+	 * All threads share one Random, so they fight over its seed. The others do not share anything.
+	 */
+	@Test
+	public void compareSharedAndPerThreadRandom() throws Exception {
+		System.out.println(THREADS + " threads, " + CALLS_PER_THREAD + " calls each");
+		System.out.println("shared        time taken : " + timeTaken(PriceGenerator.shared(new Random())));
+		System.out.println("threadLocal   time taken : " + timeTaken(PriceGenerator.threadLocal()));
+		System.out.println("split         time taken : " + timeTaken(PriceGenerator.split(42L)));
+		System.out.println("deterministic time taken : " + timeTaken(PriceGenerator.deterministic(42L)));
+	}
+
+	private long timeTaken(PriceGenerator generator) throws Exception {
+		ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+		long time1 = System.currentTimeMillis();
+		Future<?>[] futures = new Future<?>[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			futures[t] = executorService.submit(() -> {
+				double sum = 0;
+				for (int i = 0; i < CALLS_PER_THREAD; i++) {
+					sum += generator.nextFactor("book");
+				}
+				return sum;
+			});
+		}
+		for (Future<?> future : futures) {
+			assertTrue((Double) future.get() >= 0);
+		}
+		long time2 = System.currentTimeMillis();
+		executorService.shutdown();
+		executorService.awaitTermination(1, TimeUnit.SECONDS);
+		return time2 - time1;
+	}
+}
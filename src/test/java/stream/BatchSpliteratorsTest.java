@@ -0,0 +1,121 @@
+package stream;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * BatchSpliterators cut walk only sources into growing, SIZED batches.
+ *
+ * @author aus
+ */
+public class BatchSpliteratorsTest
+{
+    private static List<Long> linkedList(long size)
+    {
+        List<Long> list = new LinkedList<>();
+        for (long i = 0; i < size; i++)
+        {
+            list.add(i);
+        }
+        return list;
+    }
+
+    @Test
+    public void batchesGrowByOneUnit()
+    {
+        List<Long> list = linkedList(100000);
+        int unit = BatchSpliterators.batchUnit(100000, 4);
+        Spliterator<Long> spliterator = BatchSpliterators.of(list.iterator(), list.size(), Spliterator.ORDERED);
+
+        Spliterator<Long> first = spliterator.trySplit();
+        Spliterator<Long> second = spliterator.trySplit();
+
+        assertEquals(100000 / 36, unit);
+        assertTrue(first.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED));
+        assertEquals(BatchSpliterators.batchUnit(100000, ForkJoinPool.getCommonPoolParallelism()), first.estimateSize());
+        assertEquals(2 * first.estimateSize(), second.estimateSize());
+        assertEquals(100000 - 3 * first.estimateSize(), spliterator.estimateSize());
+        assertEquals(Long.valueOf(0), nextOf(first));
+    }
+
+    @Test
+    public void smallSourcesUseTheSmallestUnit()
+    {
+        assertEquals(BatchSpliterators.MIN_BATCH, BatchSpliterators.batchUnit(10, 8));
+        assertEquals(BatchSpliterators.MIN_BATCH, BatchSpliterators.batchUnit(-1, 8));
+        assertEquals(BatchSpliterators.MAX_BATCH, BatchSpliterators.batchUnit(Long.MAX_VALUE - 1, 1));
+    }
+
+    @Test
+    public void unknownSizeIsNotSized()
+    {
+        List<Long> list = linkedList(5000);
+        Spliterator<Long> spliterator = BatchSpliterators.of(list.iterator(), -1, Spliterator.ORDERED);
+
+        assertFalse(spliterator.hasCharacteristics(Spliterator.SIZED));
+        assertEquals(Long.MAX_VALUE, spliterator.estimateSize());
+
+        Spliterator<Long> first = spliterator.trySplit();
+        assertEquals(BatchSpliterators.MIN_BATCH, first.getExactSizeIfKnown());
+        assertEquals(Long.MAX_VALUE, spliterator.estimateSize());
+    }
+
+    @Test
+    public void everyElementOnce()
+    {
+        List<Long> list = linkedList(200000);
+
+        List<Long> parallel = BatchSpliterators.stream(list, true).collect(Collectors.toList());
+        assertEquals(list, parallel);
+
+        assertEquals(LongStream.range(0, 200000).sum(),
+                     BatchSpliterators.longStream(list, l -> l, true).sum());
+        assertEquals(LongStream.range(0, 200000).filter(l -> l % 3 == 0).count(),
+                     BatchSpliterators.longStream(list, l -> l, true).filter(l -> l % 3 == 0).count());
+    }
+
+    @Test
+    public void ofLongSplitsIntoLongArrays()
+    {
+        Spliterator.OfLong spliterator =
+                BatchSpliterators.ofLong(LongStream.range(0, 3000).iterator(), 3000, Spliterator.ORDERED);
+
+        Spliterator.OfLong first = spliterator.trySplit();
+        long[] sum = new long[1];
+        first.forEachRemaining((long l) -> sum[0] += l);
+        spliterator.forEachRemaining((long l) -> sum[0] += l);
+
+        assertEquals(2999L * 3000 / 2, sum[0]);
+        assertEquals(0, spliterator.estimateSize());
+        assertNull(spliterator.trySplit());
+    }
+
+    @Test
+    public void tryAdvanceCountsDown()
+    {
+        List<Long> list = new ArrayList<>(linkedList(3));
+        Spliterator<Long> spliterator = BatchSpliterators.of(list);
+
+        assertEquals(Long.valueOf(0), nextOf(spliterator));
+        assertEquals(2, spliterator.estimateSize());
+    }
+
+    private static Long nextOf(Spliterator<Long> spliterator)
+    {
+        Long[] next = new Long[1];
+        assertTrue(spliterator.tryAdvance(l -> next[0] = l));
+        return next[0];
+    }
+}
@@ -141,6 +141,30 @@ public class ComplicatedStreamTest
         assertEquals(3, newMap.get("Group D").size());
     }
 
+    /**
+     * When the same filter is read many times, register it as a view of
+     * GroupedNames. It is worked out once, and then only for the names which
+     * change.
+     */
+    @Test
+    public void filterValueWithGroupedNamesView()
+    {
+        GroupedNames names = GroupedNames.of(map);
+        GroupedNames.View pauls = names.register(n -> n.getFirstName().equals("Paul"));
+
+        Map<String, List<Name>> newMap = pauls.asMap();
+
+        assertEquals(4, newMap.size());
+        assertEquals(1, newMap.get("Group A").size());
+        assertEquals(1, newMap.get("Group B").size());
+        assertEquals(0, newMap.get("Group C").size());
+        assertEquals(2, newMap.get("Group D").size());
+
+        names.update(name5, n -> n.setFirstName("Paul"));
+        assertEquals(1, pauls.count("Group C"));
+        assertEquals(3, pauls.count("Group D"));
+    }
+
     /**
      * After using stream() on map, the returned structure is List<List<Name>>.
      * flatmap(l -> l.stream() ) can transform it to List<Name>
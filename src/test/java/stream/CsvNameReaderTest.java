@@ -0,0 +1,184 @@
+
+package stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import model.Gender;
+import model.Name;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * CsvNameReader reads the same names as BufferedReader and String.split().
+ *
+ * Run with -Dlines=500000000 for a file of about 10 GB.
+ *
+ * @author aus
+ */
+public class CsvNameReaderTest
+{
+    private static final long LINES = Long.getLong("lines", 2000000L);
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        file = Files.createTempFile("names", ".csv");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        Files.delete(file);
+    }
+
+    @Test
+    public void readNames()
+    {
+        String csv = "John,Smith,M\r\n\nLinda,Mccartney,F\nZo\u00eb,,\nPaul,Gascoigne,M";
+
+        List<Name> names =
+                CsvNameReader.names(Channels.newChannel(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))))
+                             .collect(Collectors.toList());
+
+        assertEquals(Arrays.asList(new Name("John", "Smith", Gender.M),
+                                   new Name("Linda", "Mccartney", Gender.F),
+                                   new Name("Zo\u00eb", "", null),
+                                   new Name("Paul", "Gascoigne", Gender.M)),
+                     names);
+    }
+
+    @Test
+    public void rawFields() throws IOException
+    {
+        String csv = "apple,15,x\nlemon,-7,y\n";
+        List<Long> numbers = new ArrayList<>();
+        byte[] lemon = "lemon".getBytes(StandardCharsets.UTF_8);
+
+        CsvNameReader.forEach(Channels.newChannel(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))),
+                              record -> {
+                                  assertEquals(3, record.fieldCount());
+                                  numbers.add(record.parseLong(1));
+                                  if (record.fieldEquals(0, lemon))
+                                  {
+                                      assertEquals('y', record.byteAt(2, 0));
+                                  }
+                              });
+
+        assertEquals(Arrays.asList(15L, -7L), numbers);
+    }
+
+    @Test
+    public void lineLongerThanTheBuffer() throws IOException
+    {
+        char[] longName = new char[CsvNameReader.BUFFER_BYTES * 3];
+        Arrays.fill(longName, 'a');
+        Files.write(file, Arrays.asList("John,Smith,M", new String(longName) + ",Long,F", "Will,Smith,M"),
+                    StandardCharsets.UTF_8);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            List<Name> names = CsvNameReader.names(channel, false).collect(Collectors.toList());
+            assertEquals(3, names.size());
+            assertEquals(longName.length, names.get(1).getFirstName().length());
+            assertEquals("Will", names.get(2).getFirstName());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badGender()
+    {
+        String csv = "John,Smith,X\n";
+        CsvNameReader.names(Channels.newChannel(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))))
+                     .count();
+    }
+
+    @Test
+    public void parallelReadsEveryLineOnce() throws IOException
+    {
+        writeNames(300000);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            assertTrue(channel.size() > 4 * CsvNameReader.MIN_SPLIT_BYTES);
+            List<Name> sequential = CsvNameReader.names(channel, false).collect(Collectors.toList());
+            List<Name> parallel = CsvNameReader.names(channel, true).collect(Collectors.toList());
+
+            assertEquals(300000, sequential.size());
+            assertEquals(sequential, parallel);
+        }
+    }
+
+    @Test
+    public void throughput() throws IOException
+    {
+        writeNames(LINES);
+        long bytes = Files.size(file);
+
+        long time1 = System.currentTimeMillis();
+        long splitCount;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+        {
+            splitCount = reader.lines().map(line -> line.split(",")).filter(f -> f[2].equals("F")).count();
+        }
+        long time2 = System.currentTimeMillis();
+        long count;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            count = CsvNameReader.names(channel, false).filter(Name::isFemale).count();
+        }
+        long time3 = System.currentTimeMillis();
+        long parallelCount;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            parallelCount = CsvNameReader.names(channel, true).filter(Name::isFemale).count();
+        }
+        long time4 = System.currentTimeMillis();
+
+        System.out.println("BufferedReader split time taken : " + (time2 - time1) + " ( " + mbPerSecond(bytes, time2 - time1) + " MB/s )");
+        System.out.println("stream               time taken : " + (time3 - time2) + " ( " + mbPerSecond(bytes, time3 - time2) + " MB/s )");
+        System.out.println("parallel             time taken : " + (time4 - time3) + " ( " + mbPerSecond(bytes, time4 - time3) + " MB/s )");
+
+        assertEquals(splitCount, count);
+        assertEquals(count, parallelCount);
+    }
+
+    private void writeNames(long lines) throws IOException
+    {
+        String[] firstNames = { "John", "Paul", "Will", "Linda", "Zo\u00eb" };
+        String[] lastNames = { "Smith", "Mccartney", "Gascoigne" };
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8))
+        {
+            for (long i = 0; i < lines; i++)
+            {
+                writer.append(firstNames[(int) (i % 5)]).append(',')
+                      .append(lastNames[(int) (i % 3)]).append(Long.toString(i)).append(',')
+                      .append(i % 5 == 3 ? 'F' : 'M').append('\n');
+            }
+        }
+    }
+
+    private static long mbPerSecond(long bytes, long millis)
+    {
+        return bytes / 1000 / Math.max(1, millis);
+    }
+}
@@ -0,0 +1,86 @@
+
+package stream;
+
+import org.junit.Test;
+
+import java.util.Spliterator;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * LongArrayList behaves like a List&lt;Long&gt; without the boxing.
+ *
+ * @author aus
+ */
+public class LongArrayListTest
+{
+    @Test
+    public void addAndGrow()
+    {
+        LongArrayList list = new LongArrayList(2);
+        for (long i = 0; i < 1000; i++)
+        {
+            list.add(i * 3);
+        }
+        list.addAll(new long[] { -1, -2, -3 });
+
+        assertEquals(1003, list.size());
+        assertEquals(999 * 3, list.get(999));
+        assertEquals(-3, list.get(1002));
+        assertEquals(-3, list.set(1002, 7));
+        assertEquals(7, list.get(1002));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getPastTheSize()
+    {
+        LongArrayList list = new LongArrayList(16);
+        list.add(1);
+        list.get(1);
+    }
+
+    @Test
+    public void sortAndBinarySearch()
+    {
+        LongArrayList list = LongArrayList.of(9, 3, 7, 1, 5);
+        list.sort();
+
+        assertArrayEquals(new long[] { 1, 3, 5, 7, 9 }, list.toArray());
+        assertEquals(2, list.binarySearch(5));
+        assertEquals(-3, list.binarySearch(4));
+    }
+
+    @Test
+    public void streamsGiveTheSameAnswers()
+    {
+        LongArrayList list = new LongArrayList();
+        list.addAll(LongStream.range(0, 100001).toArray());
+
+        assertEquals(LongStream.range(0, 100001).sum(), list.stream().sum());
+        assertEquals(LongStream.range(0, 100001).sum(), list.parallelStream().sum());
+        assertArrayEquals(list.toArray(), list.parallelStream().map(l -> l).toArray());
+    }
+
+    @Test
+    public void spliteratorSplitsInHalf()
+    {
+        LongArrayList list = new LongArrayList();
+        list.addAll(LongStream.range(0, 101).toArray());
+
+        Spliterator.OfLong suffix = list.spliterator();
+        assertTrue(suffix.hasCharacteristics(Spliterator.SIZED));
+        assertTrue(suffix.hasCharacteristics(Spliterator.SUBSIZED));
+        assertTrue(suffix.hasCharacteristics(Spliterator.ORDERED));
+
+        Spliterator.OfLong prefix = suffix.trySplit();
+        assertNotNull(prefix);
+        assertEquals(50, prefix.estimateSize());
+        assertEquals(51, suffix.estimateSize());
+        prefix.tryAdvance((long l) -> assertEquals(0, l));
+        suffix.tryAdvance((long l) -> assertEquals(50, l));
+    }
+}
@@ -0,0 +1,255 @@
+
+package stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import model.Gender;
+import model.Name;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * MappedNames and MappedPrices give back what was written.
+ *
+ * Run with -Drecords=50000000 for a file of a few GB. The cold scan is only
+ * really cold when the OS page cache has been dropped before the test.
+ *
+ * @author aus
+ */
+public class MappedRecordsTest
+{
+    private static final long RECORDS = Long.getLong("records", 2000000L);
+
+    private final Name name1 = new Name("John", "Smith", Gender.M);
+    private final Name name2 = new Name("Paul", "Mccartney", Gender.M);
+    private final Name name3 = new Name("Linda", "Mccartney", Gender.F);
+    private final Name name4 = new Name("Zo\u00eb", null, null);
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = Files.createTempDirectory("mapped");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        try (Stream<Path> files = Files.list(directory))
+        {
+            for (Path file : files.collect(Collectors.toList()))
+            {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void writeAndReadNames() throws IOException
+    {
+        Path path = directory.resolve("names.bin");
+        List<Name> names = Arrays.asList(name1, name2, name3, name4);
+        assertEquals(4, MappedNames.write(path, names));
+
+        try (MappedNames mapped = MappedNames.open(path))
+        {
+            assertEquals(4, mapped.size());
+            assertEquals(name4, mapped.get(3));
+            assertEquals(names, mapped.stream().collect(Collectors.toList()));
+            assertEquals(2, mapped.countGender(Gender.M));
+            assertEquals(1, mapped.countGender(Gender.F));
+        }
+    }
+
+    @Test
+    public void namesFromCsv() throws IOException
+    {
+        Path csv = directory.resolve("names.csv");
+        Path path = directory.resolve("names.bin");
+        Files.write(csv, Arrays.asList("John,Smith,M", "", "Linda,Mccartney,F"), StandardCharsets.UTF_8);
+
+        assertEquals(2, MappedNames.fromCsv(csv, path));
+        try (MappedNames mapped = MappedNames.open(path))
+        {
+            assertEquals(Arrays.asList(name1, name3), mapped.stream().collect(Collectors.toList()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nameTooLong() throws IOException
+    {
+        MappedNames.write(directory.resolve("names.bin"), Arrays.asList(name2), 4, 4);
+    }
+
+    @Test(expected = IOException.class)
+    public void notANamesFile() throws IOException
+    {
+        Path path = directory.resolve("prices.bin");
+        MappedPrices.write(path, prices(10));
+        MappedNames.open(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void recordBytesMustBePositive() throws IOException
+    {
+        Path path = directory.resolve("prices.bin");
+        MappedPrices.write(path, prices(10));
+        corruptHeader(path, 8, 0);
+        MappedPrices.open(path);
+    }
+
+    /**
+     * 64 x 2^58 overflows to 0, which used to pass the size check.
+     */
+    @Test(expected = IOException.class)
+    public void countMustFitTheFile() throws IOException
+    {
+        Path path = directory.resolve("prices.bin");
+        MappedPrices.write(path, prices(10));
+        corruptHeader(path, 8, 64);
+        corruptHeader(path, 24, 1L << 58);
+        MappedPrices.open(path);
+    }
+
+    @Test
+    public void writeAndReadPrices() throws IOException
+    {
+        Path csv = directory.resolve("prices.csv");
+        Path path = directory.resolve("prices.bin");
+        Files.write(csv, Arrays.asList("apple,1.5", "pear, 2.25", "kiwi,0.75"), StandardCharsets.UTF_8);
+
+        assertEquals(3, MappedPrices.fromCsv(csv, path));
+        try (MappedPrices mapped = MappedPrices.open(path))
+        {
+            assertEquals(4.5, mapped.prices().sum(), 0.0);
+            assertEquals("pear", mapped.getProduct(1));
+            assertEquals(0.75, mapped.getPrice(2), 0.0);
+            assertEquals(Arrays.asList("apple", "pear", "kiwi"),
+                         mapped.entries().map(Map.Entry::getKey).collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Records padded past the fields are read with the header's record size,
+     * one at a time or in bulk.
+     */
+    @Test
+    public void paddedPricesReadTheSame() throws IOException
+    {
+        Path path = directory.resolve("prices.bin");
+        try (MappedRecords.Writer writer = new MappedRecords.Writer(path, MappedPrices.MAGIC, 16, 4, 0))
+        {
+            for (int i = 1; i <= 3; i++)
+            {
+                ByteBuffer buffer = writer.next();
+                buffer.putDouble(i);
+                MappedRecords.putText(buffer, "p" + i, 4);
+                buffer.position(buffer.position() + 3);
+            }
+        }
+
+        try (MappedPrices mapped = MappedPrices.open(path))
+        {
+            assertEquals(6.0, mapped.prices().sum(), 0.0);
+            PrimitiveIterator.OfDouble oneByOne = mapped.prices().iterator();
+            for (int i = 1; i <= 3; i++)
+            {
+                assertEquals(i, oneByOne.nextDouble(), 0.0);
+            }
+            assertEquals("p3", mapped.getProduct(2));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotReadAfterClose() throws IOException
+    {
+        Path path = directory.resolve("prices.bin");
+        MappedPrices.write(path, prices(10));
+        MappedPrices mapped = MappedPrices.open(path);
+        mapped.close();
+        mapped.prices().sum();
+    }
+
+    @Test
+    public void coldAndWarmScan() throws IOException
+    {
+        Path names = directory.resolve("names.bin");
+        Path prices = directory.resolve("prices.bin");
+        Name[] samples = { name1, name2, name3 };
+        MappedNames.write(names, () -> LongStream.range(0, RECORDS).mapToObj(i -> samples[(int) (i % 3)]).iterator());
+        MappedPrices.write(prices, prices(RECORDS));
+
+        try (MappedNames mappedNames = MappedNames.open(names); MappedPrices mappedPrices = MappedPrices.open(prices))
+        {
+            long bytes = Files.size(names) + Files.size(prices);
+            for (String scan : new String[] { "cold", "warm" })
+            {
+                long time1 = System.currentTimeMillis();
+                long smiths = mappedNames.parallelStream().filter(n -> "Smith".equals(n.getLastName())).count();
+                long time2 = System.currentTimeMillis();
+                double total = mappedPrices.prices().parallel().sum();
+                long time3 = System.currentTimeMillis();
+
+                System.out.println(scan + " names  time taken : " + (time2 - time1));
+                System.out.println(scan + " prices time taken : " + (time3 - time2));
+                System.out.println(scan + " MB/s              : " + bytes / 1000 / Math.max(1, time3 - time1));
+
+                assertEquals((RECORDS + 2) / 3, smiths);
+                assertEquals(LongStream.range(0, RECORDS).map(i -> i % 100).sum(), total, 0.0);
+            }
+        }
+    }
+
+    private static Iterable<Map.Entry<String, Double>> prices(long count)
+    {
+        return () -> LongStream.range(0, count)
+                               .mapToObj(i -> price("product" + (i % 100), i % 100))
+                               .iterator();
+    }
+
+    private static Map.Entry<String, Double> price(String product, double price)
+    {
+        return new AbstractMap.SimpleImmutableEntry<>(product, price);
+    }
+
+    /**
+     * Overwrites the int header field at position, or the long count at 24.
+     */
+    private static void corruptHeader(Path path, int position, long value) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(position == 24 ? Long.BYTES : Integer.BYTES).order(MappedRecords.ORDER);
+        if (position == 24)
+        {
+            buffer.putLong(value);
+        }
+        else
+        {
+            buffer.putInt((int) value);
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE))
+        {
+            channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+
+package stream;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.stream.DoubleStream;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The off heap columns give the same answers as the on heap path.
+ *
+ * Run with -Dvalues=1000000000 -XX:MaxDirectMemorySize=9g for the billion
+ * longs case, the heap used should stay flat.
+ *
+ * @author aus
+ */
+public class OffHeapColumnTest
+{
+    private static final long VALUES = Long.getLong("values", 20000000L);
+
+    @Test
+    public void sameAnswersAsLongArrayList()
+    {
+        LongArrayList onHeap = new LongArrayList();
+        try (OffHeapLongColumn offHeap = new OffHeapLongColumn(1 << 10))
+        {
+            for (long i = 0; i < 100000; i++)
+            {
+                onHeap.add(i * 7 - 3);
+                offHeap.add(i * 7 - 3);
+            }
+
+            assertEquals(onHeap.size(), offHeap.size());
+            assertEquals(onHeap.get(12345), offHeap.get(12345));
+            assertEquals(onHeap.stream().sum(), offHeap.stream().sum());
+            assertEquals(onHeap.parallelStream().sum(), offHeap.parallelStream().sum());
+            assertArrayEquals(onHeap.toArray(), offHeap.parallelStream().toArray());
+
+            Map<Boolean, long[]> expected = ParallelCollectors.partition(onHeap.parallelStream(), l -> l % 3 == 0);
+            Map<Boolean, long[]> result = ParallelCollectors.partition(offHeap.parallelStream(), l -> l % 3 == 0);
+            assertArrayEquals(expected.get(true), result.get(true));
+            assertArrayEquals(expected.get(false), result.get(false));
+        }
+    }
+
+    @Test
+    public void bulkAddAcrossChunks()
+    {
+        long[] values = LongStream.range(0, 5000).toArray();
+        try (OffHeapLongColumn column = new OffHeapLongColumn(1 << 10))
+        {
+            column.add(-1);
+            column.addAll(values);
+            column.addAll(LongStream.of(-2, -3));
+
+            assertEquals(5003, column.size());
+            assertEquals(5 * 1024 * Long.BYTES, column.getOffHeapBytes());
+            assertEquals(-1, column.get(0));
+            assertEquals(4999, column.get(5000));
+            assertEquals(-3, column.get(5002));
+            column.set(1024, 42);
+            assertEquals(42, column.get(1024));
+        }
+    }
+
+    @Test
+    public void doubleColumn()
+    {
+        double[] values = DoubleStream.iterate(0.5, d -> d + 1.0).limit(100000).toArray();
+        try (OffHeapDoubleColumn column = new OffHeapDoubleColumn(1 << 12))
+        {
+            column.addAll(values);
+
+            assertEquals(DoubleStream.of(values).sum(), column.stream().sum(), 0.0);
+            assertEquals(DoubleStream.of(values).max().getAsDouble(), column.parallelStream().max().getAsDouble(), 0.0);
+            assertArrayEquals(values, column.parallelStream().toArray(), 0.0);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotReadAfterClose()
+    {
+        OffHeapLongColumn column = new OffHeapLongColumn();
+        column.add(1);
+        column.close();
+
+        assertTrue(column.isClosed());
+        column.get(0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotStreamAfterClose()
+    {
+        OffHeapDoubleColumn column = new OffHeapDoubleColumn();
+        column.add(1);
+        column.close();
+        column.stream().sum();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotAddAfterClose()
+    {
+        OffHeapLongColumn column = new OffHeapLongColumn();
+        column.add(1);
+        column.close();
+        column.add(2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotAddAllAfterClose()
+    {
+        OffHeapDoubleColumn column = new OffHeapDoubleColumn();
+        column.add(1);
+        column.close();
+        column.addAll(new double[] { 2, 3 });
+    }
+
+    @Test
+    public void heapStaysFlat()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        long time1 = System.currentTimeMillis();
+        try (OffHeapLongColumn column = new OffHeapLongColumn())
+        {
+            column.addAll(LongStream.range(0, VALUES));
+            long time2 = System.currentTimeMillis();
+            long sum = column.parallelStream().sum();
+            long time3 = System.currentTimeMillis();
+
+            System.gc();
+            long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+
+            System.out.println("off heap values     : " + column.size());
+            System.out.println("off heap bytes      : " + column.getOffHeapBytes());
+            System.out.println("heap bytes added    : " + (heapAfter - heapBefore));
+            System.out.println("fill time taken     : " + (time2 - time1));
+            System.out.println("parallel time taken : " + (time3 - time2));
+
+            assertEquals(VALUES * (VALUES - 1) / 2, sum);
+            assertTrue(heapAfter - heapBefore < column.getOffHeapBytes() / 10);
+        }
+    }
+}
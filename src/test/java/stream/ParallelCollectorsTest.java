@@ -0,0 +1,123 @@
+
+package stream;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * ParallelCollectors give the same answers as Collectors.
+ *
+ * @author aus
+ */
+public class ParallelCollectorsTest
+{
+    private final List<Integer> numbers =
+            IntStream.range(0, 100000).boxed().collect(Collectors.toList());
+
+    @Test
+    public void partitioningByKeepsTheOrder()
+    {
+        Map<Boolean, List<Integer>> expected =
+                numbers.stream().collect(Collectors.partitioningBy(i -> i % 3 == 0));
+
+        assertEquals(expected, numbers.stream().collect(ParallelCollectors.partitioningBy(i -> i % 3 == 0)));
+        assertEquals(expected, numbers.parallelStream().collect(ParallelCollectors.partitioningBy(i -> i % 3 == 0)));
+    }
+
+    @Test
+    public void partitioningByAlwaysHasBothKeys()
+    {
+        Map<Boolean, List<Integer>> result =
+                Arrays.asList(1, 3, 5).parallelStream().collect(ParallelCollectors.partitioningBy(i -> i % 2 == 0));
+
+        assertEquals(Collections.emptyList(), result.get(true));
+        assertEquals(Arrays.asList(1, 3, 5), result.get(false));
+    }
+
+    @Test
+    public void groupingByKeepsTheOrder()
+    {
+        Map<Integer, List<Integer>> expected =
+                numbers.stream().collect(Collectors.groupingBy(i -> i % 7));
+        Map<Integer, List<Integer>> result =
+                numbers.parallelStream().collect(ParallelCollectors.groupingBy(i -> i % 7));
+
+        assertEquals(expected, result);
+        assertEquals(expected.get(3).get(1000), result.get(3).get(1000));
+    }
+
+    @Test
+    public void groupingByConcurrentHasTheSameElements()
+    {
+        Map<Integer, List<Integer>> expected =
+                numbers.stream().collect(Collectors.groupingBy(i -> i % 7));
+        Map<Integer, List<Integer>> result =
+                numbers.parallelStream().collect(ParallelCollectors.groupingByConcurrent(i -> i % 7));
+
+        assertEquals(expected.keySet(), result.keySet());
+        for (Integer key : expected.keySet())
+        {
+            List<Integer> sorted = new ArrayList<>(result.get(key));
+            Collections.sort(sorted);
+            assertEquals(expected.get(key), sorted);
+        }
+    }
+
+    @Test
+    public void partitionToLongArrays()
+    {
+        long[] evens = LongStream.range(0, 100000).filter(l -> l % 2 == 0).toArray();
+        long[] odds = LongStream.range(0, 100000).filter(l -> l % 2 != 0).toArray();
+
+        Map<Boolean, long[]> fromLongStream =
+                ParallelCollectors.partition(LongStream.range(0, 100000).parallel(), l -> l % 2 == 0);
+        assertArrayEquals(evens, fromLongStream.get(true));
+        assertArrayEquals(odds, fromLongStream.get(false));
+
+        Map<Boolean, long[]> fromBoxed =
+                LongStream.range(0, 100000).boxed().parallel().collect(ParallelCollectors.partitioningToLongArrays(l -> l % 2 == 0));
+        assertArrayEquals(evens, fromBoxed.get(true));
+        assertArrayEquals(odds, fromBoxed.get(false));
+    }
+
+    /**
+     * Partly filled chunks are appended as they are, so the values stay in
+     * order whatever the chunk lengths.
+     */
+    @Test
+    public void longChunksAppendPartlyFilledChunks()
+    {
+        LongChunks chunks = new LongChunks();
+        long next = 0;
+        for (int part = 1; part <= 10; part++)
+        {
+            LongChunks other = new LongChunks();
+            for (int i = 0; i < part * 37; i++)
+            {
+                other.add(next++);
+            }
+            chunks.append(other);
+            chunks.add(next++);
+        }
+
+        assertEquals(next, chunks.size());
+        assertArrayEquals(LongStream.range(0, next).toArray(), chunks.toArray());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void listsCannotBeChanged()
+    {
+        numbers.stream().collect(ParallelCollectors.partitioningBy(i -> i > 0)).get(true).add(1);
+    }
+}
@@ -5,12 +5,19 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Java 8 stream tutorial.
@@ -56,6 +63,93 @@ public class ParallelStreamTest
         compareCase2(linkedList);
     }
 
+    @Test
+    public void batchSpliteratorHelpsLinkedList()
+    {
+        System.out.println("LinkedList : batch spliterator in case 1");
+        compareBatches1(linkedList);
+        System.out.println("");
+        System.out.println("LinkedList : batch spliterator in case 2");
+        compareBatches2(linkedList);
+    }
+
+    @Test
+    public void parallelIsFasterWithParallelCollectors()
+    {
+        System.out.println("ArrayList : parallel is faster in case 3");
+        compareCase3(arrayList);
+    }
+
+    @Test
+    public void parallelIsFasterForLongArrayList()
+    {
+        LongArrayList longArrayList = new LongArrayList();
+        for (long i = 0; i < MAX; i++)
+        {
+            longArrayList.add(i);
+        }
+        System.out.println("LongArrayList : no boxing in case 1 and case 3");
+        compareCase4(longArrayList);
+    }
+
+    /**
+     * Fixed costs, as in StreamPlannerTest, so the decisions do not depend on
+     * the machine: reduce 1ns, collect 3ns, group 10ns, copy 1ns, traversal
+     * 5ns, fork 50us, 4 threads.
+     */
+    @Test
+    public void plannerPicksTheQuickerOne()
+    {
+        StreamPlanner planner =
+                new StreamPlanner(new StreamPlanner.CostModel(new double[] { 1, 3, 10 }, 1, 5, 50000, 4),
+                                  StreamPlanner.DEFAULT_MARGIN);
+        System.out.println(planner.getCostModel());
+        System.out.println("ArrayList : planner in case 1");
+        compareWithPlanner(planner, arrayList, StreamPlanner.Terminal.REDUCE);
+        assertTrue(planner.getLastDecision().isParallel());
+        System.out.println("");
+        System.out.println("ArrayList : planner in case 2");
+        compareWithPlanner(planner, arrayList, StreamPlanner.Terminal.GROUP);
+        assertTrue(planner.getLastDecision().isParallel());
+        System.out.println("");
+        System.out.println("LinkedList : planner in case 1");
+        compareWithPlanner(planner, linkedList, StreamPlanner.Terminal.REDUCE);
+        assertFalse(planner.getLastDecision().isParallel());
+        System.out.println("");
+        System.out.println("LinkedList : planner in case 2");
+        compareWithPlanner(planner, linkedList, StreamPlanner.Terminal.GROUP);
+
+        // batches copied onto everything collected so far, never worth it.
+        assertFalse(planner.getLastDecision().isParallel());
+        assertFalse(planner.getLastDecision().isEvenSplit());
+    }
+
+    @Test
+    public void longArrayListUsesLessMemory()
+    {
+        long boxed = usedMemoryOf(() -> {
+            List<Long> list = new ArrayList<>();
+            for (long i = 0; i < MAX; i++)
+            {
+                list.add(Long.valueOf(i + 1000));
+            }
+            return list;
+        });
+        long primitive = usedMemoryOf(() -> {
+            LongArrayList list = new LongArrayList();
+            for (long i = 0; i < MAX; i++)
+            {
+                list.add(i + 1000);
+            }
+            return list;
+        });
+
+        System.out.println("ArrayList<Long> bytes per element : " + (boxed / MAX));
+        System.out.println("LongArrayList   bytes per element : " + (primitive / MAX));
+
+        assertTrue("boxed " + boxed + " primitive " + primitive, primitive < boxed);
+    }
+
     private void compareCase1(List<Long> list)
     {
         long time1 = System.currentTimeMillis();
@@ -106,4 +200,256 @@ public class ParallelStreamTest
         assertEquals(result, parallelResult);
     }
 
+    /**
+     * Case 2 again, but the parallel side uses ParallelCollectors, which do
+     * not copy lists when joining the fork join leaves.
+     */
+    private void compareCase3(List<Long> list)
+    {
+        long time1 = System.currentTimeMillis();
+
+        Map<Boolean, List<Long>> result = null;
+        for (int i = 0; i < 10; i++)
+        {
+            result =
+                    list.stream().collect(Collectors.groupingBy(s -> (s % 2 == 0)));
+        }
+
+        long time2 = System.currentTimeMillis();
+
+        Map<Boolean, List<Long>> partitionResult = null;
+        for (int i = 0; i < 10; i++)
+        {
+            partitionResult =
+                    list.parallelStream().collect(ParallelCollectors.partitioningBy(s -> (s % 2 == 0)));
+        }
+
+        long time3 = System.currentTimeMillis();
+
+        Map<Boolean, List<Long>> concurrentResult = null;
+        for (int i = 0; i < 10; i++)
+        {
+            concurrentResult =
+                    list.parallelStream().collect(ParallelCollectors.groupingByConcurrent(s -> (s % 2 == 0)));
+        }
+
+        long time4 = System.currentTimeMillis();
+
+        Map<Boolean, long[]> longArrayResult = null;
+        for (int i = 0; i < 10; i++)
+        {
+            longArrayResult =
+                    list.parallelStream().collect(ParallelCollectors.partitioningToLongArrays(s -> (s % 2 == 0)));
+        }
+
+        long time5 = System.currentTimeMillis();
+
+        System.out.println("stream                        time taken : " + (time2 - time1));
+        System.out.println("parallel partitioningBy       time taken : " + (time3 - time2));
+        System.out.println("parallel groupingByConcurrent time taken : " + (time4 - time3));
+        System.out.println("parallel long[] partition     time taken : " + (time5 - time4));
+
+        assertEquals(result, partitionResult);
+        assertEquals(result.get(true).size(), concurrentResult.get(true).size());
+        assertEquals(result.get(true).stream().mapToLong(l -> l).sum(),
+                     concurrentResult.get(true).stream().mapToLong(l -> l).sum());
+        assertEquals(result.get(false), Arrays.stream(longArrayResult.get(false)).boxed().collect(Collectors.toList()));
+    }
+
+    /**
+     * Case 1 and case 3 on a LongArrayList, against the boxed ArrayList.
+     */
+    private void compareCase4(LongArrayList list)
+    {
+        long time1 = System.currentTimeMillis();
+        long boxedResult = 0;
+        for (int i = 0; i < 10; i++)
+        {
+            boxedResult += arrayList.parallelStream().mapToLong(l -> l).sum();
+        }
+        long time2 = System.currentTimeMillis();
+        long result = 0;
+        for (int i = 0; i < 10; i++)
+        {
+            result += list.stream().sum();
+        }
+        long time3 = System.currentTimeMillis();
+        long parallelResult = 0;
+        for (int i = 0; i < 10; i++)
+        {
+            parallelResult += list.parallelStream().sum();
+        }
+        long time4 = System.currentTimeMillis();
+
+        System.out.println("boxed parallel sum       time taken : " + (time2 - time1));
+        System.out.println("stream sum               time taken : " + (time3 - time2));
+        System.out.println("parallel sum             time taken : " + (time4 - time3));
+
+        assertEquals(boxedResult, result);
+        assertEquals(result, parallelResult);
+
+        long time5 = System.currentTimeMillis();
+        Map<Boolean, long[]> boxedPartition = null;
+        for (int i = 0; i < 10; i++)
+        {
+            boxedPartition =
+                    arrayList.parallelStream().collect(ParallelCollectors.partitioningToLongArrays(s -> (s % 2 == 0)));
+        }
+        long time6 = System.currentTimeMillis();
+        Map<Boolean, long[]> partition = null;
+        for (int i = 0; i < 10; i++)
+        {
+            partition = ParallelCollectors.partition(list.parallelStream(), s -> (s % 2 == 0));
+        }
+        long time7 = System.currentTimeMillis();
+
+        System.out.println("boxed parallel partition time taken : " + (time6 - time5));
+        System.out.println("parallel partition       time taken : " + (time7 - time6));
+
+        assertArrayEquals(boxedPartition.get(true), partition.get(true));
+        assertArrayEquals(boxedPartition.get(false), partition.get(false));
+    }
+
+    /**
+     * Case 1 with the default spliterator against BatchSpliterators, which
+     * also unboxes while copying the batches.
+     */
+    private void compareBatches1(List<Long> list)
+    {
+        long time1 = System.currentTimeMillis();
+        long parallelResult = 0;
+        for (int i = 0; i < 10; i++)
+        {
+            parallelResult += list.parallelStream().mapToLong(l -> l).sum();
+        }
+        long time2 = System.currentTimeMillis();
+        long batchResult = 0;
+        for (int i = 0; i < 10; i++)
+        {
+            batchResult += BatchSpliterators.stream(list, true).mapToLong(l -> l).sum();
+        }
+        long time3 = System.currentTimeMillis();
+        long longBatchResult = 0;
+        for (int i = 0; i < 10; i++)
+        {
+            longBatchResult += BatchSpliterators.longStream(list, l -> l, true).sum();
+        }
+        long time4 = System.currentTimeMillis();
+
+        System.out.println("parallel            time taken : " + (time2 - time1));
+        System.out.println("parallel batch      time taken : " + (time3 - time2));
+        System.out.println("parallel long batch time taken : " + (time4 - time3));
+
+        assertEquals(parallelResult, batchResult);
+        assertEquals(parallelResult, longBatchResult);
+    }
+
+    private void compareBatches2(List<Long> list)
+    {
+        long time1 = System.currentTimeMillis();
+        Map<Boolean, List<Long>> parallelResult = null;
+        for (int i = 0; i < 10; i++)
+        {
+            parallelResult =
+                    list.parallelStream().collect(Collectors.groupingBy(s -> (s % 2 == 0)));
+        }
+        long time2 = System.currentTimeMillis();
+        Map<Boolean, List<Long>> batchResult = null;
+        for (int i = 0; i < 10; i++)
+        {
+            batchResult =
+                    BatchSpliterators.stream(list, true).collect(Collectors.groupingBy(s -> (s % 2 == 0)));
+        }
+        long time3 = System.currentTimeMillis();
+
+        System.out.println("parallel       time taken : " + (time2 - time1));
+        System.out.println("parallel batch time taken : " + (time3 - time2));
+
+        assertEquals(parallelResult, batchResult);
+    }
+
+    /**
+     * Case 1 or case 2 with the planner, against both fixed choices.
+     */
+    private void compareWithPlanner(StreamPlanner planner, List<Long> list, StreamPlanner.Terminal terminal)
+    {
+        long time1 = System.currentTimeMillis();
+        Object result = null;
+        for (int i = 0; i < 10; i++)
+        {
+            result = runCase(list.stream(), terminal);
+        }
+        long time2 = System.currentTimeMillis();
+        Object parallelResult = null;
+        for (int i = 0; i < 10; i++)
+        {
+            parallelResult = runCase(list.parallelStream(), terminal);
+        }
+        long time3 = System.currentTimeMillis();
+        Object plannedResult = null;
+        for (int i = 0; i < 10; i++)
+        {
+            plannedResult = runCase(planner.stream(list, terminal), terminal);
+        }
+        long time4 = System.currentTimeMillis();
+
+        System.out.println("stream   time taken : " + (time2 - time1));
+        System.out.println("parallel time taken : " + (time3 - time2));
+        System.out.println("planner  time taken : " + (time4 - time3));
+        System.out.println("decision : " + planner.getLastDecision());
+
+        assertEquals(result, parallelResult);
+        assertEquals(result, plannedResult);
+    }
+
+    private static Object runCase(Stream<Long> stream, StreamPlanner.Terminal terminal)
+    {
+        if (terminal == StreamPlanner.Terminal.REDUCE)
+        {
+            return stream.mapToLong(l -> l).sum();
+        }
+        return stream.collect(Collectors.groupingBy(s -> (s % 2 == 0)));
+    }
+
+    /**
+     * Rough heap used by what the supplier builds, from the difference of
+     * used memory after a gc. Garbage from before can be collected in the
+     * middle and make one reading too small, so the largest of three is
+     * taken.
+     */
+    private static long usedMemoryOf(Supplier<Object> supplier)
+    {
+        long largest = 0;
+        for (int i = 0; i < 3; i++)
+        {
+            long before = usedMemoryAfterGc();
+            Object kept = supplier.get();
+            long after = usedMemoryAfterGc();
+            assertNotNull(kept);
+            largest = Math.max(largest, after - before);
+        }
+        return largest;
+    }
+
+    /**
+     * System.gc() is only a hint, so ask until the used memory stops going
+     * down.
+     */
+    private static long usedMemoryAfterGc()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++)
+        {
+            System.gc();
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used)
+            {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+
 }
@@ -0,0 +1,165 @@
+package stream;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * StreamPlanner decisions, with fixed costs so they do not depend on the
+ * machine.
+ *
+ * @author aus
+ */
+public class StreamPlannerTest
+{
+    /**
+     * reduce 1ns, collect 3ns, group 10ns, copy 1ns, traversal 5ns, fork
+     * 50us, 4 threads.
+     */
+    private final StreamPlanner planner =
+            new StreamPlanner(new StreamPlanner.CostModel(new double[] { 1, 3, 10 }, 1, 5, 50000, 4),
+                              StreamPlanner.DEFAULT_MARGIN);
+
+    @Test
+    public void smallSourcesStaySequential()
+    {
+        StreamPlanner.Decision decision =
+                planner.decide(Spliterator.SIZED | Spliterator.SUBSIZED, 1000, StreamPlanner.Terminal.GROUP);
+
+        assertFalse(decision.isParallel());
+        assertEquals(1000, decision.getSize());
+        assertTrue(decision.getParallelNanos() > decision.getSequentialNanos());
+    }
+
+    @Test
+    public void bigEvenSourcesGoParallel()
+    {
+        assertTrue(planner.decide(Spliterator.SIZED | Spliterator.SUBSIZED, 1000000, StreamPlanner.Terminal.REDUCE)
+                          .isParallel());
+        assertTrue(planner.decide(Spliterator.SIZED | Spliterator.SUBSIZED, 1000000, StreamPlanner.Terminal.GROUP)
+                          .isParallel());
+    }
+
+    @Test
+    public void unevenSourcesPayForTheSplit()
+    {
+        // traversal alone costs more than the work saved.
+        StreamPlanner.Decision decision =
+                planner.decide(Spliterator.SIZED, 1000000, StreamPlanner.Terminal.REDUCE);
+
+        assertFalse(decision.isParallel());
+        assertFalse(planner.decide(Spliterator.SIZED, 1000000, StreamPlanner.Terminal.GROUP).isParallel());
+    }
+
+    @Test
+    public void parallelOnlyWhenQuickerByTheMargin()
+    {
+        // 70us against 80us, quicker but not by a fifth.
+        StreamPlanner.Decision close =
+                planner.decide(Spliterator.SIZED | Spliterator.SUBSIZED, 80000, StreamPlanner.Terminal.REDUCE);
+        assertTrue(close.getParallelNanos() < close.getSequentialNanos());
+        assertFalse(close.isParallel());
+        assertEquals("parallel not quicker by the margin", close.getReason());
+
+        // 75us against 100us.
+        StreamPlanner.Decision clear =
+                planner.decide(Spliterator.SIZED | Spliterator.SUBSIZED, 100000, StreamPlanner.Terminal.REDUCE);
+        assertTrue(clear.isParallel());
+
+        StreamPlanner noMargin = new StreamPlanner(planner.getCostModel(), 0);
+        assertTrue(noMargin.decide(Spliterator.SIZED | Spliterator.SUBSIZED, 80000, StreamPlanner.Terminal.REDUCE)
+                           .isParallel());
+    }
+
+    @Test
+    public void linkedListCollectPlansSequential()
+    {
+        List<Long> linkedList = new LinkedList<>();
+        for (long i = 0; i < 1000000; i++)
+        {
+            linkedList.add(i);
+        }
+
+        Stream<Long> stream = planner.stream(linkedList, StreamPlanner.Terminal.COLLECT);
+
+        assertFalse(stream.isParallel());
+        assertFalse(planner.getLastDecision().isParallel());
+        assertFalse(planner.getLastDecision().isEvenSplit());
+        assertEquals(1000000, stream.collect(Collectors.toList()).size());
+    }
+
+    @Test
+    public void unknownSizeStaysSequential()
+    {
+        Spliterator<Long> spliterator =
+                Spliterators.spliteratorUnknownSize(Arrays.asList(1L, 2L, 3L).iterator(), Spliterator.ORDERED);
+        StreamPlanner.Decision decision = planner.decide(spliterator, StreamPlanner.Terminal.REDUCE);
+
+        assertFalse(decision.isParallel());
+        assertTrue(Double.isNaN(decision.getSequentialNanos()));
+        assertEquals("size unknown", decision.getReason());
+    }
+
+    @Test
+    public void streamFollowsTheDecision()
+    {
+        List<Long> arrayList = new ArrayList<>();
+        for (long i = 0; i < 1000000; i++)
+        {
+            arrayList.add(i);
+        }
+        List<Long> linkedList = new LinkedList<>(arrayList);
+
+        Stream<Long> parallel = planner.stream(arrayList, StreamPlanner.Terminal.REDUCE);
+        assertTrue(parallel.isParallel());
+        assertEquals(499999500000L, parallel.mapToLong(l -> l).sum());
+
+        Stream<Long> sequential = planner.stream(linkedList, StreamPlanner.Terminal.GROUP);
+        assertFalse(sequential.isParallel());
+        assertEquals(500000, sequential.collect(Collectors.groupingBy(l -> l % 2 == 0)).get(true).size());
+
+        LongArrayList longs = LongArrayList.of(1, 2, 3);
+        assertFalse(planner.stream(longs, StreamPlanner.Terminal.REDUCE).isParallel());
+    }
+
+    @Test
+    public void decisionsAreRecorded()
+    {
+        planner.decide(Spliterator.SIZED | Spliterator.SUBSIZED, 10, StreamPlanner.Terminal.REDUCE);
+        planner.decide(Spliterator.SIZED | Spliterator.SUBSIZED, 20, StreamPlanner.Terminal.COLLECT);
+
+        List<StreamPlanner.Decision> decisions = planner.getDecisions();
+        assertEquals(2, decisions.size());
+        assertEquals(10, decisions.get(0).getSize());
+        assertEquals(StreamPlanner.Terminal.COLLECT, planner.getLastDecision().getTerminal());
+        assertNotNull(planner.getLastDecision().toString());
+
+        for (int i = 0; i < 1000; i++)
+        {
+            planner.decide(0, Long.MAX_VALUE, StreamPlanner.Terminal.REDUCE);
+        }
+        assertEquals(256, planner.getDecisions().size());
+    }
+
+    @Test
+    public void calibratedOnce()
+    {
+        StreamPlanner calibrated = StreamPlanner.calibrated();
+
+        assertTrue(calibrated == StreamPlanner.calibrated());
+        assertTrue(calibrated.getCostModel().getParallelism() >= 1);
+        assertTrue(calibrated.getCostModel().sequentialNanos(1000, StreamPlanner.Terminal.REDUCE) > 0);
+    }
+}
@@ -5,8 +5,13 @@ import org.junit.Test;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 import model.*;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -110,7 +115,72 @@ public class CompletableFutureTest {
 		System.out.println("Time taken [" + msTaken + "] ms. total price = [�" + String.format( "%.2f", totalPrice ) + "]" );
 		assertTrue(true);
 	}
-	
-	
-	
+
+	/**
+	 * getPriceAsync()
+	 *
+	 * Same as above, but the shop gives back a CompletableFuture itself. No thread is blocked while waiting for the price.
+	 */
+	@Test
+	public void getPriceFromShopsUsingGetPriceAsync() throws InterruptedException, ExecutionException {
+
+		LocalDateTime startDt = LocalDateTime.now();
+		Shop onlineShop = new Shop();
+
+		Future<Double> future1 = onlineShop.getPriceAsync("book");
+		Future<Double> future2 = onlineShop.getPriceAsync("phone");
+		Future<Double> future3 = onlineShop.getPriceAsync("battery");
+		Future<Double> future4 = onlineShop.getPriceAsync("pen");
+
+		double totalPrice = 0;
+		totalPrice = future1.get();
+		totalPrice += future2.get();
+		totalPrice += future3.get();
+		totalPrice += future4.get();
+
+		long msTaken = startDt.until( LocalDateTime.now(), ChronoUnit.MILLIS);
+		System.out.println("Time taken [" + msTaken + "] ms. total price = [�" + String.format( "%.2f", totalPrice ) + "]" );
+		assertTrue(totalPrice > 0);
+	}
+
+	/**
+	 * 10000 quotes in flight at the same time still take about 1 second, because they all share one timer thread.
+	 */
+	@Test
+	public void manyPricesInFlightUsingGetPriceAsync() {
+
+		LocalDateTime startDt = LocalDateTime.now();
+		Shop onlineShop = new Shop();
+
+		List<CompletableFuture<Double>> futures = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			futures.add( onlineShop.getPriceAsync("book") );
+		}
+		double totalPrice = futures.stream().mapToDouble(CompletableFuture::join).sum();
+
+		long msTaken = startDt.until( LocalDateTime.now(), ChronoUnit.MILLIS);
+		System.out.println("Time taken [" + msTaken + "] ms. total price = [�" + String.format( "%.2f", totalPrice ) + "]" );
+		assertTrue(msTaken < 5000);
+	}
+
+	/**
+	 * getPrices()
+	 *
+	 * One call for all the products, so we only wait for the shop once.
+	 */
+	@Test
+	public void getPricesFromShopInOneBatch() {
+
+		LocalDateTime startDt = LocalDateTime.now();
+		Shop onlineShop = new Shop();
+
+		Map<String, Double> prices = onlineShop.getPrices( Arrays.asList("book", "phone", "battery", "pen") );
+		double totalPrice = prices.values().stream().mapToDouble(Double::doubleValue).sum();
+
+		long msTaken = startDt.until( LocalDateTime.now(), ChronoUnit.MILLIS);
+		System.out.println("Time taken [" + msTaken + "] ms. total price = [�" + String.format( "%.2f", totalPrice ) + "]" );
+		assertEquals(4, prices.size());
+		assertTrue(msTaken < 2000);
+	}
+
 }
@@ -0,0 +1,87 @@
+package thread;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Signals of IterablePublisher, one at a time and none after the last one.
+ *
+ * @author Sunny
+ */
+public class IterablePublisherTest {
+
+	@Test
+	public void badRequestAfterCompleteIsIgnored() {
+		RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE, (s, item) -> {});
+		new IterablePublisher<>(Arrays.asList("book", "pen")).subscribe(subscriber);
+
+		subscriber.subscription.request(0);
+
+		assertEquals(Arrays.asList("book", "pen", "complete"), subscriber.signals);
+	}
+
+	/**
+	 * The error waits for onNext() to return, and is only sent once.
+	 */
+	@Test
+	public void badRequestFromOnNextFailsOnceAfterIt() {
+		RecordingSubscriber subscriber = new RecordingSubscriber(1, (s, item) -> {
+			s.request(0);
+			s.request(-1);
+		});
+		new IterablePublisher<>(Arrays.asList("book", "pen")).subscribe(subscriber);
+
+		assertEquals(Arrays.asList("book", "error"), subscriber.signals);
+		assertTrue(subscriber.failure instanceof IllegalArgumentException);
+	}
+
+	private static final class RecordingSubscriber implements Flow.Subscriber<String> {
+
+		private final long initial;
+		private final BiConsumer<Flow.Subscription, String> onItem;
+		private final List<String> signals = new CopyOnWriteArrayList<>();
+		private Flow.Subscription subscription;
+		private Throwable failure;
+		private boolean inOnNext;
+
+		private RecordingSubscriber( long initial_, BiConsumer<Flow.Subscription, String> onItem_ ) {
+			this.initial = initial_;
+			this.onItem = onItem_;
+		}
+
+		@Override
+		public void onSubscribe( Flow.Subscription subscription_ ) {
+			subscription = subscription_;
+			subscription.request(initial);
+		}
+
+		@Override
+		public void onNext( String item ) {
+			signals.add(item);
+			inOnNext = true;
+			try {
+				onItem.accept(subscription, item);
+			} finally {
+				inOnNext = false;
+			}
+		}
+
+		@Override
+		public void onError( Throwable throwable ) {
+			signals.add(inOnNext ? "error inside onNext" : "error");
+			failure = throwable;
+		}
+
+		@Override
+		public void onComplete() {
+			signals.add(inOnNext ? "complete inside onNext" : "complete");
+		}
+	}
+}
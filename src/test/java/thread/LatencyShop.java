@@ -0,0 +1,55 @@
+package thread;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import model.Shop;
+
+/**
+ * Stand-in for Shop whose answer takes as long as the latency function says.
+ * By default the price of a product is its length, so it is easy to check.
+ *
+ * @author Sunny
+ */
+public class LatencyShop extends Shop {
+
+	private static final ScheduledExecutorService TIMER = Executors.newScheduledThreadPool(2, r -> {
+		Thread thread = new Thread(r, "latency-shop-timer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final ToLongFunction<String> latencyMs;
+	private final ToDoubleFunction<String> price;
+	private final List<CompletableFuture<Double>> requests = new CopyOnWriteArrayList<>();
+
+	public LatencyShop( ToLongFunction<String> latencyMs_ ) {
+		this(latencyMs_, String::length);
+	}
+
+	public LatencyShop( ToLongFunction<String> latencyMs_, ToDoubleFunction<String> price_ ) {
+		super();
+		this.latencyMs = latencyMs_;
+		this.price = price_;
+	}
+
+	@Override
+	public CompletableFuture<Double> getPriceAsync(String product) {
+		CompletableFuture<Double> future = new CompletableFuture<>();
+		requests.add(future);
+		TIMER.schedule(() -> future.complete(price.applyAsDouble(product)), latencyMs.applyAsLong(product), TimeUnit.MILLISECONDS);
+		return future;
+	}
+
+	/**
+	 * Every future handed out so far, in order.
+	 */
+	public List<CompletableFuture<Double>> getRequests() {
+		return requests;
+	}
+}
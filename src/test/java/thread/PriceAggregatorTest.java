@@ -0,0 +1,90 @@
+package thread;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The first product is slow. The other prices should not have to wait for it.
+ *
+ * @author Sunny
+ */
+public class PriceAggregatorTest {
+
+	private final LatencyShop shop = new LatencyShop(p -> p.equals("slow") ? 1000L : 10L);
+
+	@Test
+	public void pricesAreAddedUpAsTheyArrive() {
+		LocalDateTime startDt = LocalDateTime.now();
+		AtomicLong msToFirstResult = new AtomicLong(-1L);
+
+		PriceAggregator aggregator = new PriceAggregator(s -> msToFirstResult.compareAndSet(-1L, startDt.until( LocalDateTime.now(), ChronoUnit.MILLIS)));
+		aggregator.add(shop.getPriceAsync("slow"));
+		for (int i = 0; i < 1000; i++) {
+			aggregator.add(shop.getPriceAsync(i % 2 == 0 ? "pen" : "book"));
+		}
+		PriceStatistics statistics = aggregator.complete().join();
+
+		long msTaken = startDt.until( LocalDateTime.now(), ChronoUnit.MILLIS);
+		System.out.println("First result after [" + msToFirstResult.get() + "] ms, all after [" + msTaken + "] ms. " + statistics);
+
+		assertTrue(msToFirstResult.get() < 500);
+		assertEquals(1001, statistics.getCount());
+		assertEquals(0, statistics.getFailures());
+		assertEquals(4 + 500 * 3 + 500 * 4, statistics.getTotal(), 0.0);
+		assertEquals(3, statistics.getMin(), 0.0);
+		assertEquals(4, statistics.getMax(), 0.0);
+	}
+
+	@Test
+	public void failedQuotesAreCountedSeparately() {
+		PriceAggregator aggregator = new PriceAggregator();
+		CompletableFuture<Double> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new IllegalStateException("shop closed"));
+		aggregator.add(failed);
+		aggregator.add(CompletableFuture.completedFuture(2.0));
+
+		PriceStatistics statistics = aggregator.complete().join();
+		assertEquals(1, statistics.getCount());
+		assertEquals(1, statistics.getFailures());
+		assertEquals(2.0, statistics.getAverage(), 0.0);
+	}
+
+	@Test
+	public void completeWithoutQuotes() {
+		PriceStatistics statistics = new PriceAggregator().complete().join();
+		assertEquals(0, statistics.getCount());
+		assertEquals(Double.POSITIVE_INFINITY, statistics.getMin(), 0.0);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void cannotAddAfterComplete() {
+		PriceAggregator aggregator = new PriceAggregator();
+		aggregator.complete();
+		aggregator.add(CompletableFuture.completedFuture(1.0));
+	}
+
+	@Test
+	public void streamInCompletionOrder() {
+		List<CompletableFuture<Double>> futures = new ArrayList<>();
+		futures.add(shop.getPriceAsync("slow"));
+		futures.add(shop.getPriceAsync("pen"));
+
+		List<Double> prices = PriceAggregator.inCompletionOrder(futures).collect(Collectors.toList());
+
+		assertEquals(2, prices.size());
+		// pen first, although it was asked for second.
+		assertEquals(3, prices.get(0), 0.0);
+		assertEquals(4, prices.get(1), 0.0);
+		assertTrue(futures.get(0).isDone());
+	}
+}
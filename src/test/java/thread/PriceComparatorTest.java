@@ -0,0 +1,167 @@
+package thread;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compare the prices of many shops.
+ *
+ * @author Sunny
+ */
+public class PriceComparatorTest {
+
+	private final LatencyShop cheapShop = new LatencyShop(p -> 50L, p -> 1.0);
+	private final LatencyShop normalShop = new LatencyShop(p -> 50L, p -> 2.0);
+	private final LatencyShop dearShop = new LatencyShop(p -> 50L, p -> 3.0);
+
+	@Test
+	public void findTheLowestPriceOfEachProduct() {
+		PriceComparator comparator = new PriceComparator(Arrays.asList(dearShop, cheapShop, normalShop), 10);
+
+		Map<String, Quote> best = comparator.findBestPrices(Arrays.asList("book", "phone", "battery", "pen")).join();
+
+		assertEquals(4, best.size());
+		for (Quote quote : best.values()) {
+			assertEquals(1.0, quote.getPrice(), 0.0);
+			assertSame(cheapShop, quote.getShop());
+		}
+		assertEquals(0, comparator.getInFlight());
+	}
+
+	@Test
+	public void stopAsSoonAsThePriceIsGoodEnough() {
+		LatencyShop slowShop = new LatencyShop(p -> 5000L, p -> 0.5);
+		LatencyShop quickShop = new LatencyShop(p -> 10L, p -> 2.0);
+		PriceComparator comparator = new PriceComparator(Arrays.asList(slowShop, quickShop), 10);
+
+		LocalDateTime startDt = LocalDateTime.now();
+		Quote quote = comparator.findBestPrice("book", price -> price <= 2.0).join();
+		long msTaken = startDt.until( LocalDateTime.now(), ChronoUnit.MILLIS);
+
+		assertSame(quickShop, quote.getShop());
+		assertTrue(msTaken < 1000);
+		assertTrue(slowShop.getRequests().get(0).isCancelled());
+	}
+
+	@Test
+	public void shopWhichFailsIsLeftOut() {
+		Shop brokenShop = new Shop() {
+			@Override
+			public CompletableFuture<Double> getPriceAsync(String product) {
+				CompletableFuture<Double> future = new CompletableFuture<>();
+				future.completeExceptionally(new IllegalStateException("closed"));
+				return future;
+			}
+		};
+		PriceComparator comparator = new PriceComparator(Arrays.asList(brokenShop, normalShop), 10);
+
+		assertEquals(2.0, comparator.findBestPrice("book", price -> false).join().getPrice(), 0.0);
+		assertTrue(new PriceComparator(Arrays.asList(brokenShop), 10).findBestPrices(Arrays.asList("book")).join().isEmpty());
+	}
+
+	/**
+	 * Quotes which are already complete when they are started used to start the next one on the same stack, until a
+	 * StackOverflowError was swallowed in a callback and the result never completed.
+	 */
+	@Test
+	public void manyQuotesAlreadyComplete() throws Exception {
+		CompletableFuture<Double> gate = new CompletableFuture<>();
+		List<Shop> shops = new ArrayList<>();
+		shops.add(new Shop() {
+			@Override
+			public CompletableFuture<Double> getPriceAsync(String product) {
+				return gate.thenApply(price -> price);
+			}
+		});
+		for (int s = 0; s < 3; s++) {
+			shops.add(new Shop() {
+				@Override
+				public CompletableFuture<Double> getPriceAsync(String product) {
+					return CompletableFuture.completedFuture(2.0);
+				}
+			});
+		}
+		List<String> products = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			products.add("product" + i);
+		}
+		PriceComparator comparator = new PriceComparator(shops, 4);
+
+		CompletableFuture<Map<String, Quote>> future = comparator.findBestPrices(products);
+		gate.complete(1.0);
+
+		Map<String, Quote> best = future.get(30, TimeUnit.SECONDS);
+		assertEquals(5000, best.size());
+		assertEquals(1.0, best.get("product4999").getPrice(), 0.0);
+		assertEquals(0, comparator.getInFlight());
+	}
+
+	/**
+	 * Whatever runs on the result, like the join() in findTheLowestPriceOfEachProduct, already sees the slot free.
+	 */
+	@Test
+	public void slotIsFreeWhenTheResultCompletes() {
+		CompletableFuture<Double> price = new CompletableFuture<>();
+		Shop shop = new Shop() {
+			@Override
+			public CompletableFuture<Double> getPriceAsync(String product) {
+				return price;
+			}
+		};
+		PriceComparator comparator = new PriceComparator(Arrays.asList(shop), 1);
+
+		CompletableFuture<Integer> inFlight = comparator.findBestPrice("book", p -> false).thenApply(q -> comparator.getInFlight());
+		assertEquals(1, comparator.getInFlight());
+		price.complete(1.0);
+
+		assertEquals(Integer.valueOf(0), inFlight.join());
+	}
+
+	/**
+	 * 4 shops x 50 products of 50 ms each. Time taken should go down with the cap, and the cap is never passed.
+	 */
+	@Test
+	public void throughputScalesWithTheConcurrencyCap() {
+		List<String> products = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			products.add("product" + i);
+		}
+		long previous = Long.MAX_VALUE;
+		for (int cap : new int[] { 5, 20, 200 }) {
+			AtomicInteger maxInFlight = new AtomicInteger();
+			List<Shop> shops = new ArrayList<>();
+			for (int s = 0; s < 4; s++) {
+				shops.add(new LatencyShop(p -> 50L));
+			}
+			PriceComparator comparator = new PriceComparator(shops, cap);
+
+			LocalDateTime startDt = LocalDateTime.now();
+			CompletableFuture<Map<String, Quote>> future = comparator.findBestPrices(products);
+			while (!future.isDone()) {
+				maxInFlight.accumulateAndGet(comparator.getInFlight(), Math::max);
+				Thread.yield();
+			}
+			long msTaken = startDt.until( LocalDateTime.now(), ChronoUnit.MILLIS);
+			System.out.println("cap [" + cap + "] time taken [" + msTaken + "] ms. max in flight [" + maxInFlight.get() + "]" );
+
+			assertEquals(50, future.join().size());
+			assertTrue(maxInFlight.get() <= cap);
+			assertTrue(msTaken < previous);
+			previous = msTaken;
+		}
+	}
+}
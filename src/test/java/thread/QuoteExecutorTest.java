@@ -0,0 +1,174 @@
+package thread;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Run many CallableTask on each backend of QuoteExecutor.
+ *
+ * @author Sunny
+ */
+public class QuoteExecutorTest {
+
+	private static final int PRODUCTS = 200;
+	private static final int MAX_CONCURRENCY = 100;
+
+	private AtomicInteger running, maxRunning;
+	private Shop onlineShop;
+	private List<CallableTask> tasks;
+
+	@Before
+	public void setUp() throws Exception {
+		running = new AtomicInteger();
+		maxRunning = new AtomicInteger();
+		onlineShop = new Shop() {
+			@Override
+			public double getPrice(String product) {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					return super.getPrice(product);
+				} finally {
+					running.decrementAndGet();
+				}
+			}
+		};
+		tasks = new ArrayList<>();
+		for (int i = 0; i < PRODUCTS; i++) {
+			tasks.add( new CallableTask( onlineShop, "product" + i ) );
+		}
+	}
+
+	@Test
+	public void platformPool() {
+		getPrices(QuoteExecutor.Backend.PLATFORM);
+	}
+
+	/**
+	 * Only availableProcessors() workers, but managed blocking lets the pool grow up to the limit while they wait.
+	 */
+	@Test
+	public void forkJoinPoolWithManagedBlocking() {
+		getPrices(QuoteExecutor.Backend.FORK_JOIN);
+		assertEquals(0, ForkJoinPool.commonPool().getActiveThreadCount());
+	}
+
+	/**
+	 * Tasks waiting for a permit queue without a thread, so the pool grows by at most maxConcurrency blocked calls.
+	 */
+	@Test
+	public void forkJoinPoolStaysBounded() {
+		Set<Thread> threads = ConcurrentHashMap.newKeySet();
+		AtomicInteger calls = new AtomicInteger(), maxCalls = new AtomicInteger();
+		List<Callable<Integer>> sleepers = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			sleepers.add(() -> {
+				threads.add(Thread.currentThread());
+				maxCalls.accumulateAndGet(calls.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(2);
+					return 1;
+				} finally {
+					calls.decrementAndGet();
+				}
+			});
+		}
+
+		int total;
+		try (QuoteExecutor quoteExecutor = QuoteExecutor.create(QuoteExecutor.Backend.FORK_JOIN, 10)) {
+			total = quoteExecutor.submitAll(sleepers).stream().mapToInt(CompletableFuture::join).sum();
+		}
+
+		System.out.println("FORK_JOIN : threads used [" + threads.size() + "] max calls [" + maxCalls.get() + "]");
+		assertEquals(2000, total);
+		assertTrue(maxCalls.get() <= 10);
+		assertTrue(threads.size() <= 10 + Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * A quote still waiting for a permit fails when the executor is closed, instead of waiting forever.
+	 */
+	@Test
+	public void closeRejectsQueuedTasks() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		QuoteExecutor quoteExecutor = QuoteExecutor.create(QuoteExecutor.Backend.FORK_JOIN, 1);
+		CompletableFuture<Integer> running = quoteExecutor.submit(() -> {
+			release.await();
+			return 1;
+		});
+		CompletableFuture<Integer> queued = quoteExecutor.submit(() -> 2);
+
+		quoteExecutor.close();
+		try {
+			queued.join();
+			fail("queued task ran after close");
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+		try {
+			quoteExecutor.submit(() -> 3);
+			fail("submit after close");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+
+		release.countDown();
+		assertEquals(Integer.valueOf(1), running.get(5, TimeUnit.SECONDS));
+		assertTrue(quoteExecutor.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void virtualThreads() {
+		if (!QuoteExecutor.isVirtualThreadSupported()) {
+			System.out.println("No virtual threads on java " + System.getProperty("java.version"));
+			return;
+		}
+		getPrices(QuoteExecutor.Backend.VIRTUAL);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownBackendInSystemProperty() {
+		System.setProperty(QuoteExecutor.BACKEND_PROPERTY, "green");
+		try {
+			QuoteExecutor.fromSystemProperty(1);
+		} finally {
+			System.clearProperty(QuoteExecutor.BACKEND_PROPERTY);
+		}
+	}
+
+	private void getPrices(QuoteExecutor.Backend backend) {
+		LocalDateTime startDt = LocalDateTime.now();
+
+		double totalPrice;
+		try (QuoteExecutor quoteExecutor = QuoteExecutor.create(backend, MAX_CONCURRENCY)) {
+			List<CompletableFuture<Double>> futures = quoteExecutor.submitAll(tasks);
+			totalPrice = futures.stream().mapToDouble(CompletableFuture::join).sum();
+		}
+
+		long msTaken = startDt.until( LocalDateTime.now(), ChronoUnit.MILLIS);
+		System.out.println(backend + " : time taken [" + msTaken + "] ms. total price = [" + String.format( "%.2f", totalPrice ) + "]" );
+
+		// 200 products, 100 at a time, 1 second each.
+		assertTrue(maxRunning.get() <= MAX_CONCURRENCY);
+		assertTrue(msTaken >= 2000 && msTaken < 4000);
+	}
+}
@@ -0,0 +1,166 @@
+package thread;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import model.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * products -> IterablePublisher -> QuoteProcessor -> subscriber
+ *
+ * @author Sunny
+ */
+public class QuoteProcessorTest {
+
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private final AtomicInteger maxOutstanding = new AtomicInteger();
+
+	/**
+	 * Product i takes (i * 37 % 50) ms, so they come back all mixed up. Keeps track of how many are being priced.
+	 */
+	private final LatencyShop shop = new LatencyShop(p -> Integer.parseInt(p.substring(7)) * 37 % 50) {
+		@Override
+		public CompletableFuture<Double> getPriceAsync(String product) {
+			maxOutstanding.accumulateAndGet(outstanding.incrementAndGet(), Math::max);
+			return super.getPriceAsync(product).whenComplete((p, ex) -> outstanding.decrementAndGet());
+		}
+	};
+
+	private static List<String> products(int count) {
+		return IntStream.range(0, count).mapToObj(i -> "product" + i).collect(Collectors.toList());
+	}
+
+	@Test
+	public void submissionOrderKeepsTheOrderOfTheProducts() throws InterruptedException {
+		QuoteProcessor processor = new QuoteProcessor(shop, 8, QuoteProcessor.Order.SUBMISSION);
+		new IterablePublisher<>(products(200)).subscribe(processor);
+		CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE, 0L);
+		processor.subscribe(subscriber);
+
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+		assertEquals(products(200), subscriber.quotes.stream().map(Quote::getProduct).collect(Collectors.toList()));
+		assertTrue(maxOutstanding.get() <= 8);
+	}
+
+	@Test
+	public void completionOrderHandsOnWhateverIsReady() throws InterruptedException {
+		QuoteProcessor processor = new QuoteProcessor(shop, 8, QuoteProcessor.Order.COMPLETION);
+		new IterablePublisher<>(products(200)).subscribe(processor);
+		CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE, 0L);
+		processor.subscribe(subscriber);
+
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+		List<String> received = subscriber.quotes.stream().map(Quote::getProduct).sorted().collect(Collectors.toList());
+		List<String> expected = new ArrayList<>(products(200));
+		Collections.sort(expected);
+		assertEquals(expected, received);
+		assertTrue(maxOutstanding.get() <= 8);
+	}
+
+	/**
+	 * The products never end, and the subscriber takes one at a time, slowly. Only a few products are ever read.
+	 */
+	@Test
+	public void slowSubscriberThrottlesTheProducts() throws InterruptedException {
+		AtomicInteger read = new AtomicInteger();
+		Iterable<String> endless = () -> new Iterator<String>() {
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public String next() {
+				return "product" + read.getAndIncrement();
+			}
+		};
+		QuoteProcessor processor = new QuoteProcessor(shop, 4, QuoteProcessor.Order.COMPLETION);
+		new IterablePublisher<>(endless).subscribe(processor);
+		CollectingSubscriber subscriber = new CollectingSubscriber(20L, 20L);
+		processor.subscribe(subscriber);
+
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+		Thread.sleep(100L);
+		assertEquals(20, subscriber.quotes.size());
+		assertTrue(maxOutstanding.get() <= 4);
+		assertTrue(read.get() <= 20 + 4);
+	}
+
+	@Test
+	public void quotesFromCallableTasks() throws InterruptedException {
+		try (QuoteExecutor quoteExecutor = QuoteExecutor.create(QuoteExecutor.Backend.PLATFORM, 4)) {
+			QuoteProcessor processor = new QuoteProcessor(new Shop(), quoteExecutor, 4, QuoteProcessor.Order.SUBMISSION);
+			new IterablePublisher<>(Arrays.asList("book", "phone", "battery", "pen")).subscribe(processor);
+			CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE, 0L);
+			processor.subscribe(subscriber);
+
+			assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+			assertEquals(4, subscriber.quotes.size());
+			assertEquals("pen", subscriber.quotes.get(3).getProduct());
+		}
+	}
+
+	/**
+	 * Asks for one quote at a time, sleeping sleepMs before asking for the next, and cancels after max quotes.
+	 */
+	private static final class CollectingSubscriber implements Flow.Subscriber<Quote> {
+
+		private final long max;
+		private final long sleepMs;
+		private final List<Quote> quotes = Collections.synchronizedList(new ArrayList<>());
+		private final CountDownLatch done = new CountDownLatch(1);
+		private Flow.Subscription subscription;
+
+		private CollectingSubscriber(long max_, long sleepMs_) {
+			this.max = max_;
+			this.sleepMs = sleepMs_;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription_) {
+			this.subscription = subscription_;
+			subscription.request(sleepMs == 0 ? Long.MAX_VALUE : 1);
+		}
+
+		@Override
+		public void onNext(Quote quote) {
+			quotes.add(quote);
+			if (quotes.size() == max) {
+				subscription.cancel();
+				done.countDown();
+				return;
+			}
+			if (sleepMs > 0) {
+				try {
+					Thread.sleep(sleepMs);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				subscription.request(1);
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			throwable.printStackTrace();
+		}
+
+		@Override
+		public void onComplete() {
+			done.countDown();
+		}
+	}
+}
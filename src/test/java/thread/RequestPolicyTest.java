@@ -0,0 +1,126 @@
+package thread;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Deadlines, hedging and partial results against a shop with a slow tail.
+ *
+ * @author Sunny
+ */
+public class RequestPolicyTest {
+
+	/**
+	 * Every 25th request takes 2 seconds, the others 20 ms. So the p95 is 20 ms, and a hedge is never slow as well.
+	 */
+	@Test
+	public void hedgingCutsTheSlowTail() {
+		AtomicInteger count = new AtomicInteger();
+		LatencyShop shop = new LatencyShop(p -> count.incrementAndGet() % 25 == 0 ? 2000L : 20L);
+		RequestPolicy policy = new RequestPolicy(5000L, 100L, TimeUnit.MILLISECONDS);
+
+		LocalDateTime startDt = LocalDateTime.now();
+		List<CompletableFuture<Double>> futures = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			futures.add(policy.getPrice(shop, "book"));
+		}
+		double totalPrice = futures.stream().mapToDouble(CompletableFuture::join).sum();
+		long msTaken = startDt.until( LocalDateTime.now(), ChronoUnit.MILLIS);
+		System.out.println("Time taken [" + msTaken + "] ms. requests sent [" + shop.getRequests().size() + "]" );
+
+		assertEquals(200 * 4, totalPrice, 0.0);
+		assertTrue(msTaken < 1000);
+		assertTrue(shop.getRequests().size() > 200);
+	}
+
+	/**
+	 * Every 5th request takes 300 ms, the others 10 ms, so the p95 is in the slow mode. The slow ones lose to their
+	 * hedge, and they must still count, or the hedge delay drops to the fast mode and nearly every call is hedged.
+	 */
+	@Test
+	public void hedgeDelayStaysInTheSlowMode() {
+		AtomicInteger count = new AtomicInteger();
+		LatencyShop shop = new LatencyShop(p -> count.incrementAndGet() % 5 == 0 ? 300L : 10L);
+		RequestPolicy policy = new RequestPolicy(5000L, 100L, TimeUnit.MILLISECONDS);
+
+		for (int round = 0; round < 20; round++) {
+			List<CompletableFuture<Double>> futures = new ArrayList<>();
+			for (int i = 0; i < 10; i++) {
+				futures.add(policy.getPrice(shop, "book"));
+			}
+			futures.forEach(CompletableFuture::join);
+			long delayMs = policy.getHedgeDelay(TimeUnit.MILLISECONDS);
+			System.out.println("round [" + round + "] hedge delay [" + delayMs + "] ms. requests sent [" + shop.getRequests().size() + "]");
+
+			assertTrue("round " + round + " delay " + delayMs, delayMs >= 100 && delayMs < 1000);
+		}
+	}
+
+	@Test
+	public void noHedgeWhenTheFirstAnswerIsQuick() {
+		LatencyShop shop = new LatencyShop(p -> 10L);
+		RequestPolicy policy = new RequestPolicy(5000L, 500L, TimeUnit.MILLISECONDS);
+
+		assertEquals(4, policy.getPrice(shop, "book").join(), 0.0);
+		assertEquals(1, shop.getRequests().size());
+	}
+
+	@Test
+	public void loserIsCancelled() {
+		AtomicInteger count = new AtomicInteger();
+		LatencyShop shop = new LatencyShop(p -> count.incrementAndGet() == 1 ? 2000L : 10L);
+		RequestPolicy policy = new RequestPolicy(5000L, 50L, TimeUnit.MILLISECONDS);
+
+		assertEquals(4, policy.getPrice(shop, "book").join(), 0.0);
+
+		assertEquals(2, shop.getRequests().size());
+		assertTrue(shop.getRequests().get(0).isCancelled());
+		assertFalse(shop.getRequests().get(1).isCancelled());
+	}
+
+	@Test
+	public void callFailsAfterItsDeadline() throws InterruptedException {
+		LatencyShop shop = new LatencyShop(p -> 2000L);
+		RequestPolicy policy = new RequestPolicy(100L, 50L, TimeUnit.MILLISECONDS);
+
+		try {
+			policy.getPrice(shop, "book").get();
+			fail("should time out");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		for (CompletableFuture<Double> request : shop.getRequests()) {
+			assertTrue(request.isCancelled());
+		}
+	}
+
+	@Test
+	public void getPricesReturnsWhatArrivedBeforeTheDeadline() throws InterruptedException {
+		LatencyShop shop = new LatencyShop(p -> p.startsWith("slow") ? 2000L : 20L);
+		RequestPolicy policy = new RequestPolicy(5000L, 1000L, TimeUnit.MILLISECONDS);
+
+		LocalDateTime startDt = LocalDateTime.now();
+		Map<String, Double> prices = policy.getPrices(shop, Arrays.asList("book", "slow phone", "pen", "slow battery"), 300L, TimeUnit.MILLISECONDS);
+		long msTaken = startDt.until( LocalDateTime.now(), ChronoUnit.MILLIS);
+
+		assertEquals(Arrays.asList("book", "pen"), new ArrayList<>(prices.keySet()));
+		assertEquals(4, prices.get("book"), 0.0);
+		assertTrue(msTaken < 1000);
+	}
+}
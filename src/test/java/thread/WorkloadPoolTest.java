@@ -0,0 +1,150 @@
+package thread;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import model.Shop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stream pipelines and quote requests each in their own WorkloadPool.
+ *
+ * @author Sunny
+ */
+public class WorkloadPoolTest {
+
+	private static final int QUOTES = 200;
+
+	private WorkloadPool computePool, quotePool;
+	private List<Long> values;
+
+	@Before
+	public void setUp() throws Exception {
+		computePool = WorkloadPool.compute("stream", Runtime.getRuntime().availableProcessors());
+		quotePool = WorkloadPool.blocking("quote", 4);
+		values = new ArrayList<>();
+		for (long i = 0; i < 1000000; i++) {
+			values.add(i);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		computePool.close();
+		quotePool.close();
+	}
+
+	@Test
+	public void parallelStreamRunsInItsPool() {
+		Set<String> threads = ConcurrentHashMap.newKeySet();
+		long sum = computePool.invoke(() -> values.parallelStream().mapToLong(l -> {
+			threads.add(Thread.currentThread().getName());
+			return l;
+		}).sum());
+
+		assertEquals(499999500000L, sum);
+		for (String thread : threads) {
+			assertTrue(thread, thread.startsWith("stream-"));
+		}
+	}
+
+	@Test
+	public void asyncChainRunsInItsPools() {
+		Shop shop = new LatencyShop(product -> 10);
+		String thread = quotePool.supplyAsync(() -> Thread.currentThread().getName() + " " + shop.getPrice("book"))
+				.thenApplyAsync(s -> s + " " + Thread.currentThread().getName(), computePool.executor())
+				.join();
+
+		assertTrue(thread, thread.matches("quote-\\d+ 4\\.0 stream-\\d+"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void failuresReachTheCaller() {
+		computePool.invoke(() -> {
+			throw new IllegalStateException("boom");
+		});
+	}
+
+	/**
+	 * With the quote pool full of blocking getPrice() calls and more waiting, the quote pool never grows past its size
+	 * and the stream pool keeps summing. Blocked quote threads use no CPU, so the sum times printed should be close.
+	 */
+	@Test
+	public void saturatedQuotePoolLeavesStreamsAlone() {
+		long idle = timeSums();
+
+		AtomicInteger running = new AtomicInteger(), maxRunning = new AtomicInteger();
+		Shop shop = new LatencyShop(product -> 50) {
+			@Override
+			public double getPrice(String product) {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					return super.getPrice(product);
+				} finally {
+					running.decrementAndGet();
+				}
+			}
+		};
+		List<CompletableFuture<Double>> quotes = new ArrayList<>();
+		for (int i = 0; i < QUOTES; i++) {
+			String product = "product" + i;
+			quotes.add(quotePool.supplyAsync(() -> shop.getPrice(product)));
+		}
+		while (running.get() < 4) {
+			Thread.yield();
+		}
+		WorkloadPool.Metrics saturated = quotePool.getMetrics();
+		long busy = timeSums();
+		WorkloadPool.Metrics stream = computePool.getMetrics();
+
+		System.out.println("idle quote pool   sum time taken : " + idle);
+		System.out.println("busy quote pool   sum time taken : " + busy);
+		System.out.println(saturated);
+		System.out.println(stream);
+
+		assertTrue(saturated.getQueuedSubmissions() > 0);
+		assertEquals(QUOTES, quotes.stream().map(CompletableFuture::join).count());
+		assertTrue(quotePool.getMetrics().getPoolSize() <= 4);
+		assertEquals(4, maxRunning.get());
+	}
+
+	private long timeSums() {
+		long time1 = System.currentTimeMillis();
+		long result = 0;
+		for (int i = 0; i < 10; i++) {
+			result += computePool.invoke(() -> values.parallelStream().mapToLong(l -> l).sum());
+			result += computePool.invoke(() -> LongStream.range(0, 1000000).parallel().map(l -> l % 7).sum());
+		}
+		long time2 = System.currentTimeMillis();
+		assertTrue(result > 0);
+		return time2 - time1;
+	}
+
+	@Test
+	public void threadsAreNamed() {
+		List<String> names = quotePool.invoke(() -> values.subList(0, 4).stream()
+				.map(l -> quotePool.invoke(() -> Thread.currentThread().getName()))
+				.collect(Collectors.toList()));
+
+		assertTrue(names.stream().allMatch(name -> name.startsWith("quote-")));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void blockingFailuresReachTheCaller() {
+		quotePool.invoke(() -> {
+			throw new IllegalStateException("boom");
+		});
+	}
+
+}